@@ -26,15 +26,21 @@ import java.util.UUID;
 import org.apache.log4j.Logger;
 
 import protopeer.Finger;
-import aggregation.AggregationState;
-import bloomfilter.CBloomFilter;
-import bloomfilter.CCountingFilter;
-import bloomfilter.CHashFactory;
-import bloomfilter.IFilter;
+import aggregation.AggregationParams;
+import aggregation.PrimitiveAggregationState;
 import consistency.AggregationOutcome;
 import consistency.AggregatorReport;
 import consistency.BloomFilterParams;
+import consistency.BloomFilterType;
+import consistency.CuckooFilter;
+import consistency.FalsePositiveTable;
 import consistency.DisseminatorReport;
+import consistency.ExpirationQueue;
+import consistency.MembershipDigest;
+import consistency.MembershipFilter;
+import consistency.MembershipFilterFactory;
+import consistency.MembershipFilterPool;
+import consistency.NibbleCountingBloomFilter;
 import dsutil.generic.state.ArithmeticState;
 import dsutil.generic.state.State;
 import dsutil.generic.state.StateException;
@@ -64,17 +70,38 @@ import dsutil.protopeer.services.aggregation.AggregationType;
  * false positives but also of false negatives that can appear after removals
  * of false positives in counting bloom filters.
  *
+ * If the WINDOW aggregation parameter is given, the contributions of the
+ * disseminators are kept in a time-ordered queue and they are removed from the
+ * aggregates and the SMA when they are not refreshed within the window. A
+ * disseminator whose contribution has expired is aggregated again when it
+ * pushes its selected state.
+ *
+ * If a disseminator report contains a WEIGHT, the selected state is
+ * aggregated with this weight. The weights of the aggregated states are kept,
+ * so that a replaced or expired state is removed with the weight it was added.
+ * No weights are kept for states aggregated without a weight.
+ *
  *
  * @author Evangelos
  */
 public class Aggregator {
 
-    private AggregationState aggregates;
-    private CCountingFilter SMA;
-    private CBloomFilter DMA;
+    private PrimitiveAggregationState aggregates;
+    private MembershipFilter SMA;
+    private MembershipFilter DMA;
     private int SMACounter;
     private int DMACounter;
     private HashMap<BloomFilterParams, Object> parameters;
+    private HashMap<AggregationParams, Object> aggregationParameters;
+    private FalsePositiveTable SMAFalsePositives;
+    private FalsePositiveTable DMAFalsePositives;
+    private MembershipFilterPool SMAPool;
+    private MembershipFilterPool DMAPool;
+    private ExpirationQueue<State> contributions;
+    private double window;
+    private double time;
+    private double distinctTime;
+    private HashMap<UUID, Double> weights;
     
     /**
      * Initializes the aggregator with the bloom filter parameters.
@@ -82,6 +109,18 @@ public class Aggregator {
      * @param parameters the parameters of the SMA and DMA bloom filters
      */
     public Aggregator(AggregationType type, Map<BloomFilterParams, Object> parameters){
+        this(type, parameters, new HashMap<AggregationParams, Object>());
+    }
+
+    /**
+     * Initializes the aggregator with the bloom filter parameters and the
+     * parameters of the aggregation state.
+     *
+     * @param parameters the parameters of the SMA and DMA bloom filters
+     * @param aggregationParameters the parameters of the aggregation state
+     */
+    public Aggregator(AggregationType type, Map<BloomFilterParams, Object> parameters, Map<AggregationParams, Object> aggregationParameters){
+        this.aggregationParameters=new HashMap<AggregationParams, Object>(aggregationParameters);
         this.init(type, parameters);
     }
 
@@ -92,41 +131,81 @@ public class Aggregator {
      * 2. Creating an aggregation state
      * 3. Creating a SMA bloom filter and its counter
      * 4. Creating a DMA bloom filter and its counter
+     * 5. Creating the tables of the false positive probabilities and the
+     * pools of filters
      *
      * @param parameters the parameters of the SMA and DMA bloom filters
      */
     public void init(AggregationType type, Map<BloomFilterParams, Object> parameters){
         this.parameters=new HashMap<BloomFilterParams, Object>();
         this.parameters.putAll(parameters);
-        aggregates=new AggregationState(type);
-        this.SMA=new CCountingFilter(this.initSMA());
+        aggregates=new PrimitiveAggregationState(type, this.aggregationParameters);
+        this.SMA=this.createSMA();
         this.SMACounter=0;
-        this.DMA=new CBloomFilter(this.initDMA());
+        this.DMA=this.createDMA();
         this.DMACounter=0;
+        this.SMAFalsePositives=new FalsePositiveTable();
+        this.DMAFalsePositives=new FalsePositiveTable();
+        this.SMAPool=new MembershipFilterPool(1);
+        this.DMAPool=new MembershipFilterPool(1);
+        Double window=(Double)this.aggregationParameters.get(AggregationParams.WINDOW);
+        if(window!=null){
+            this.window=window.doubleValue();
+            this.contributions=new ExpirationQueue<State>();
+        }
     }
 
     /**
-     * Creates and parameterizes a hash factory for the SMA bloom filter.
+     * Creates and parameterizes the SMA bloom filter.
      *
-     * @return a hash factory the parameterizes the SMA bloom filter
+     * @return a SMA bloom filter, counting unless another type is given and
+     * scalable if a target false positive probability is given
      */
-    private CHashFactory initSMA(){
+    private MembershipFilter createSMA(){
         int type=((Integer)parameters.get(BloomFilterParams.SMA_HASH_TYPE)).intValue();
         int m=((Integer)parameters.get(BloomFilterParams.SMA_M)).intValue();
         int k=((Integer)parameters.get(BloomFilterParams.SMA_K)).intValue();
-        return new CHashFactory(type, m, k);
+        Double targetFP=(Double)parameters.get(BloomFilterParams.SMA_TARGET_FP);
+        return MembershipFilterFactory.create(this.getSMAType(), type, m, k, targetFP);
     }
 
     /**
-     * Creates and parameterizes a hash factory for the DMA bloom filter.
+     * Checks the bloom filter parameters for the type used for the SMA bloom
+     * filter. The SMA must support the removals of replaced states, therefore
+     * a blocked SMA is blocked counting and the simple and bit-sliced types
+     * are rejected.
      *
-     * @return a hash factory the parameterizes the DMA bloom filter
+     * @return the bloom filter type, COUNTING by default
+     * @throws IllegalArgumentException if the type cannot remove memberships
      */
-    private CHashFactory initDMA(){
+    private BloomFilterType getSMAType(){
+        BloomFilterType type=(BloomFilterType)parameters.get(BloomFilterParams.SMA_TYPE);
+        if(type==null){
+            return BloomFilterType.COUNTING;
+        }
+        switch(type){
+            case BLOCKED:
+                return BloomFilterType.BLOCKED_COUNTING;
+            case SIMPLE:
+            case BIT_SLICED:
+                throw new IllegalArgumentException("The SMA bloom filter must support removals, "+type+" cannot be used");
+            default:
+                return type;
+        }
+    }
+
+    /**
+     * Creates and parameterizes the DMA bloom filter.
+     *
+     * @return a simple DMA bloom filter, scalable if a target false positive
+     * probability is given
+     */
+    private MembershipFilter createDMA(){
         int type=((Integer)parameters.get(BloomFilterParams.DMA_HASH_TYPE)).intValue();
         int m=((Integer)parameters.get(BloomFilterParams.DMA_M)).intValue();
         int k=((Integer)parameters.get(BloomFilterParams.DMA_K)).intValue();
-        return new CHashFactory(type, m, k);
+        Double targetFP=(Double)parameters.get(BloomFilterParams.DMA_TARGET_FP);
+        return MembershipFilterFactory.create(BloomFilterType.SIMPLE, type, m, k, targetFP);
     }
 
     /**
@@ -138,8 +217,9 @@ public class Aggregator {
      * @return true if the disseminator membership is added in the DMA bloom filter
      */
     public boolean addDMAMembership(Finger disseminator){
-        if(!this.DMA.contains(disseminator.toString())){
-            this.DMA.add(disseminator.toString());
+        long digest=MembershipDigest.digest(disseminator);
+        if(!this.DMA.contains(digest)){
+            this.DMA.add(digest);
             this.DMACounter++;
             return true;
         }
@@ -155,8 +235,9 @@ public class Aggregator {
      * @return true if the selected state membership is added in the SMA bloom filter
      */
     public boolean addSMAMembership(State state){
-        if(!this.SMA.contains(state.getStateId().toString())){
-            this.SMA.add(state.getStateId().toString());
+        long digest=MembershipDigest.digest(state);
+        if(!this.SMA.contains(digest)){
+            this.SMA.add(digest);
             this.SMACounter++;
             return true;
         }
@@ -177,6 +258,43 @@ public class Aggregator {
         }
     }
 
+    /**
+     * Adds a slected state in the aggregation state with a weight
+     *
+     * @param state the added state
+     * @param weight the weight of the state or null if it is not weighted
+     */
+    public void addAggregationState(State state, Double weight){
+        if(weight==null){
+            this.addAggregationState(state);
+            return;
+        }
+        try{
+            this.aggregates.addState(state, weight.doubleValue());
+            if(this.weights==null){
+                this.weights=new HashMap<UUID, Double>();
+            }
+            this.weights.put(state.getStateId(), weight);
+        }
+        catch(StateException ex){
+            System.out.println(ex.toString()+ex.getStateExcMsg());
+        }
+    }
+
+    /**
+     * Checks if an aggregated state has to be aggregated again with a new
+     * weight
+     *
+     * @param state the aggregated state
+     * @param weight the new weight or null if the state is not weighted
+     *
+     * @return true if the state is aggregated with another weight
+     */
+    private boolean isReweighted(State state, Double weight){
+        Double current=this.weights==null ? null : this.weights.get(state.getStateId());
+        return current==null ? weight!=null : !current.equals(weight);
+    }
+
     /**
      * Removes a selected state from the aggregation state
      *
@@ -184,7 +302,13 @@ public class Aggregator {
      */
     public void removeAggregationState(State state){
         try{
-            this.aggregates.removeState(state);
+            Double weight=this.weights==null ? null : this.weights.remove(state.getStateId());
+            if(weight==null){
+                this.aggregates.removeState(state);
+            }
+            else{
+                this.aggregates.removeState(state, weight.doubleValue());
+            }
         }
         catch(StateException ex){
             System.out.println(ex.toString()+ex.getStateExcMsg());
@@ -201,8 +325,8 @@ public class Aggregator {
      * filter
      */
     public boolean removeSMAMembership(State state){
-        if(this.SMA.contains(state.getStateId().toString())){
-            this.SMA.remove(state.getStateId().toString());
+        long digest=MembershipDigest.digest(state);
+        if(this.SMA.contains(digest) && this.SMA.remove(digest)){
             this.SMACounter--;
             return true;
         }
@@ -210,11 +334,15 @@ public class Aggregator {
     }
 
     /**
-     * Accesses the aggregation state with the calculated aggregation functions
+     * Accesses the aggregation state with the calculated aggregation functions.
+     * The aggregates are kept in a <code>PrimitiveAggregationState</code>
+     * instead of an <code>AggregationState</code>. It provides the same
+     * <code>getAggregate</code>, but it is not an <code>AggregationState</code>
+     * and it does not store the aggregates as state properties.
      *
      * @return the aggregation state of the aggregator
      */
-    public AggregationState getAggregationState(){
+    public PrimitiveAggregationState getAggregationState(){
         return this.aggregates;
     }
 
@@ -232,6 +360,44 @@ public class Aggregator {
         return DMACounter;
     }
 
+    /**
+     * Counts the increments that found a saturated counter in the SMA counting
+     * bloom filter or the memberships that did not fit in the SMA cuckoo filter.
+     *
+     * @return the counter overflows of the SMA bloom filter
+     */
+    public int getSMAOverflows(){
+        if(this.SMA instanceof NibbleCountingBloomFilter){
+            return ((NibbleCountingBloomFilter)this.SMA).getOverflows();
+        }
+        if(this.SMA instanceof CuckooFilter){
+            return ((CuckooFilter)this.SMA).getOverflows();
+        }
+        return 0;
+    }
+
+    /**
+     * Replaces the bloom filter parameters and creates new empty SMA and DMA.
+     * The pooled filters are dropped. Nothing changes if the parameters are
+     * the same.
+     *
+     * @param parameters the new parameterization of the bloom filters
+     */
+    public void resize(Map<BloomFilterParams, Object> parameters){
+        if(this.parameters.entrySet().containsAll(parameters.entrySet())){
+            return;
+        }
+        this.parameters.putAll(parameters);
+        this.SMAFalsePositives.clear();
+        this.DMAFalsePositives.clear();
+        this.SMAPool.clear();
+        this.DMAPool.clear();
+        this.SMA=this.createSMA();
+        this.SMACounter=0;
+        this.DMA=this.createDMA();
+        this.DMACounter=0;
+    }
+
     /**
      * Removes all the elements from:
      *
@@ -239,14 +405,86 @@ public class Aggregator {
      * 2. the SMA bloom filter
      * 3. the DMA bloom filter
      *
-     * and it resets the SMA and DMA counters.
+     * and it resets the SMA and DMA counters. The SMA and DMA bloom filters
+     * are double-buffered: they are retired and swapped with cleared ones of
+     * the pools. The retired filters are cleared by
+     * <code>prepareNextEpoch</code>.
      */
     public void clearAggregates(){
         this.aggregates.resetAggregationState(this.aggregates.getAggregationType());
-        this.SMA.clear();
+        this.SMAPool.retire(this.SMA);
+        MembershipFilter filter=this.SMAPool.poll();
+        this.SMA=filter==null ? this.createSMA() : filter;
         this.SMACounter=0;
-        this.DMA.clear();
+        this.DMAPool.retire(this.DMA);
+        filter=this.DMAPool.poll();
+        this.DMA=filter==null ? this.createDMA() : filter;
         this.DMACounter=0;
+        if(this.contributions!=null){
+            this.contributions.clear();
+        }
+        this.distinctTime=this.time;
+        if(this.weights!=null){
+            this.weights.clear();
+        }
+    }
+
+    /**
+     * Advances the time of the aggregator and removes the contributions that
+     * have not been refreshed within the time window from the aggregates and
+     * the SMA.
+     *
+     * @param time the current time in milliseconds
+     *
+     * @return the number of expired contributions
+     */
+    public int advanceTime(double time){
+        this.time=time;
+        if(this.contributions==null){
+            return 0;
+        }
+        int expired=0;
+        ExpirationQueue.Entry<State> entry=this.contributions.poll(time-this.window);
+        while(entry!=null){
+            this.removeSMAMembership(entry.getValue());
+            this.removeAggregationState(entry.getValue());
+            expired++;
+            entry=this.contributions.poll(time-this.window);
+        }
+        return expired;
+    }
+
+    /**
+     * Rebuilds the distinct values counter from the contributions and the
+     * local state once per time window, as the counter cannot remove the
+     * values of the expired and replaced states.
+     *
+     * @param localState the state aggregated locally, which is not a
+     * contribution
+     *
+     * @return true if the counter is rebuilt
+     */
+    public boolean rebuildDistinctCount(State localState){
+        if(this.contributions==null || this.aggregates.getDistinctCounter()==null || this.time-this.distinctTime<this.window){
+            return false;
+        }
+        this.aggregates.clearDistinctCount();
+        this.aggregates.addDistinctCount(localState);
+        for(ExpirationQueue.Entry<State> contribution:this.contributions.entries()){
+            this.aggregates.addDistinctCount(contribution.getValue());
+        }
+        this.distinctTime=this.time;
+        return true;
+    }
+
+    /**
+     * Clears the filters retired in the last clearing of the aggregates so
+     * that they can be reused in the next one. The SMA and DMA in use are not
+     * affected.
+     */
+    public void prepareNextEpoch(){
+        this.SMAPool.prepare();
+        this.DMAPool.prepare();
     }
 
     /**
@@ -256,11 +494,8 @@ public class Aggregator {
      * @param filter a bloom filter
      * @param n the number of elemets added in the bloom filter
      */
-    public double getFalsePositiveProbability(IFilter filter, int n){
-        double k=filter.hash().k();
-        double m=filter.container().size();
-        double p=Math.pow((1-Math.pow(Math.E, -k*n/m)), k);
-        return p;
+    public double getFalsePositiveProbability(MembershipFilter filter, int n){
+        return filter.getFalsePositiveProbability(n);
     }
 
     /**
@@ -269,7 +504,7 @@ public class Aggregator {
      * @return the false positive probability of the DMA bloom filter
      */
     public double getDMAFalsePositiveProbability(){
-        return this.getFalsePositiveProbability(this.DMA, getDMACounter());
+        return this.DMAFalsePositives.get(this.DMA, getDMACounter());
     }
 
     /**
@@ -278,7 +513,7 @@ public class Aggregator {
      * @return the false positive probability of the SMA bloom filter
      */
     public double getSMAFalsePositiveProbability(){
-        return this.getFalsePositiveProbability(this.SMA, getSMACounter());
+        return this.SMAFalsePositives.get(this.SMA, getSMACounter());
     }
 
     /**
@@ -348,27 +583,28 @@ public class Aggregator {
      *
      * @return the aggregator report
      */
-    public HashMap<AggregatorReport, Object> receiveDisseminatorReport(Finger disseminator, HashMap<DisseminatorReport, Object> disseminatorReport){
-        HashMap<AggregatorReport, Object> aggregatorReport=new HashMap<AggregatorReport, Object>();
+    public AggregatorReport receiveDisseminatorReport(Finger disseminator, DisseminatorReport disseminatorReport){
         boolean ack=false;
         State AMSRemoval=null;
         State AMSAddition=null;
         AggregationOutcome outcome=null;
-        State newState=(State)disseminatorReport.get(DisseminatorReport.SELECTED_STATE);
+        State newState=disseminatorReport.getSelectedState();
+        Double weight=disseminatorReport.isWeighted() ? Double.valueOf(disseminatorReport.getWeight()) : null;
         
-        HashMap<UUID, Double> posAMSFalsoPos=(HashMap<UUID, Double>)disseminatorReport.get(DisseminatorReport.POSITIVE_AMS_FP);
-        double AMDFalsePos=((Double)disseminatorReport.get(DisseminatorReport.AMD_FP)).doubleValue();
-        boolean positiveAMD=((Boolean)disseminatorReport.get(DisseminatorReport.POSITIVE_AMD)).booleanValue();
-        boolean positiveDMA=this.DMA.contains(disseminator.toString());
+        Map<UUID, Double> posAMSFalsoPos=disseminatorReport.getPositiveAMSFalsePositives();
+        double AMDFalsePos=disseminatorReport.getAMDFalsePositive();
+        boolean positiveAMD=disseminatorReport.isPositiveAMD();
+        long disseminatorDigest=MembershipDigest.digest(disseminator);
+        boolean positiveDMA=this.DMA.contains(disseminatorDigest);
         
         // Level 1: Aggregation has been performed before
         if(positiveAMD && positiveDMA){
             // Level 1.1: Check for false positives in the positive AMS memberships
-            HashSet<State> posAMS=(HashSet)disseminatorReport.get(DisseminatorReport.POSITIVE_AMS);
+            HashSet<State> posAMS=new HashSet<State>(disseminatorReport.getPositiveAMS());
             Iterator<State> it=posAMS.iterator();
             while(it.hasNext()){
                 State state=it.next();
-                if(!this.SMA.contains(state.getStateId().toString())){
+                if(!this.SMA.contains(MembershipDigest.digest(state))){
                     it.remove();
                 }
             }
@@ -382,18 +618,29 @@ public class Aggregator {
 //            }
 //            else{
                 // Level 1.2: Perform an aggregation if and only if there only one
-                // mutual membership between AMS and SMA
-                if(posAMS.size()==1){
-                    // Level 1.2.1: Perform a replacement if the new state is
-                    // different compared to the old one.
-                    State oldState=posAMS.iterator().next();
-                    if(!oldState.equals(newState)){
+                // mutual membership between AMS and SMA. With a time window,
+                // the contribution of the disseminator defines the old state
+                // if its AMS membership has expired.
+                if(posAMS.size()==1 || (posAMS.isEmpty() && this.contributions!=null)){
+                    State oldState=posAMS.isEmpty() ? this.contributions.get(disseminatorDigest) : posAMS.iterator().next();
+                    // Level 1.2.1: Perform a replacement if the new state or
+                    // its weight is different compared to the old one. If the
+                    // contribution has expired, the new state is aggregated
+                    // again.
+                    if(oldState==null){
+                        AMSAddition=newState;
+                        this.addSMAMembership(newState);
+                        this.addAggregationState(newState, weight);
+                        outcome=AggregationOutcome.FIRST;
+                        ack=true;
+                    }
+                    else if(!oldState.equals(newState) || this.isReweighted(oldState, weight)){
                         AMSRemoval=oldState;
                         this.removeSMAMembership(oldState);
                         this.removeAggregationState(oldState);
                         AMSAddition=newState;
                         this.addSMAMembership(newState);
-                        this.addAggregationState(newState);
+                        this.addAggregationState(newState, weight);
                         outcome=AggregationOutcome.REPLACE;
                         ack=true;
                     }
@@ -404,6 +651,9 @@ public class Aggregator {
                         catch(StateException ex){
                             System.out.println(ex.toString()+ex.getStateExcMsg());
                         }
+                        if(posAMS.isEmpty()){
+                            AMSAddition=newState;
+                        }
                         outcome=AggregationOutcome.DOUBLE;
                         ack=true;
                     }
@@ -442,14 +692,13 @@ public class Aggregator {
             AMSAddition=newState;
             this.addDMAMembership(disseminator);
             this.addSMAMembership(newState);
-            this.addAggregationState(newState);
+            this.addAggregationState(newState, weight);
             outcome=AggregationOutcome.FIRST;
             ack=true;
         }
-        aggregatorReport.put(AggregatorReport.ACK, ack);
-        aggregatorReport.put(AggregatorReport.OUTCOME, outcome);
-        aggregatorReport.put(AggregatorReport.AMS_ADDITION, AMSAddition);
-        aggregatorReport.put(AggregatorReport.AMS_REMOVAL, AMSRemoval);
-        return aggregatorReport;
+        if(ack && this.contributions!=null){
+            this.contributions.put(disseminatorDigest, newState, this.time);
+        }
+        return new AggregatorReport(ack, outcome, AMSRemoval, AMSAddition);
     }
 }
@@ -17,20 +17,27 @@
  */
 package actors;
 
-import bloomfilter.CBloomFilter;
-import bloomfilter.CCountingFilter;
-import bloomfilter.CHashFactory;
-import bloomfilter.IFilter;
 import consistency.AggregatorReport;
+import consistency.BitSlicedBloomFilterMatrix;
 import consistency.BloomFilterParams;
 import consistency.BloomFilterType;
+import consistency.CuckooFilter;
+import consistency.FalsePositiveTable;
 import consistency.DisseminatorReport;
+import consistency.MembershipDigest;
+import consistency.MembershipFilter;
+import consistency.MembershipFilterFactory;
+import consistency.ExpirationQueue;
+import consistency.MembershipFilterPool;
+import consistency.NibbleCountingBloomFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 import protopeer.Finger;
 import dsutil.generic.state.State;
@@ -65,17 +72,40 @@ import dsutil.generic.state.State;
  * States and state selections can change on demand. Memberships are adjusted 
  * based on the received report of the aggregator.
  *
+ * If a time window is set, the acknowledged aggregations are kept in a
+ * time-ordered queue with the acknowledged state. The AMS membership of an
+ * aggregator for this state is removed when the aggregation has not been
+ * acknowledged again within half the window, so that the aggregator becomes
+ * outdated and it is pushed again before the aggregator expires the
+ * contribution after the full window.
+ *
+ * If a weight is set, it is contained in the disseminator reports and the
+ * aggregators weight the selected state with it.
+ *
  * @author Evangelos
  */
 public class Disseminator {
 
     private State selectedState;
     private HashSet<State> possibleStates;
-    private CBloomFilter AMD;
-    private HashMap AMSs;
+    private MembershipFilter AMD;
+    private HashMap<State, MembershipFilter> AMSs;
+    private BitSlicedBloomFilterMatrix AMSMatrix;
+    private State[] AMSColumns;
     private HashMap<UUID, Integer> AMSCounters;
     private int AMDCounter;
     private HashMap<BloomFilterParams, Object> parameters;
+    private FalsePositiveTable AMSFalsePositives;
+    private FalsePositiveTable AMDFalsePositives;
+    private HashMap<UUID, Double> AMSFalsePositiveProbabilities;
+    private MembershipFilterPool AMSPool;
+    private MembershipFilterPool AMDPool;
+    private BitSlicedBloomFilterMatrix standbyAMSMatrix;
+    private BitSlicedBloomFilterMatrix retiredAMSMatrix;
+    private ExpirationQueue<Aggregation> aggregations;
+    private double window;
+    private double time;
+    private Double weight;
 
     /**
      * Initializes the disseminator with a number of parameters.
@@ -93,11 +123,12 @@ public class Disseminator {
      *
      * 1. Sets the selected state.
      * 2. Sets the possible state.
-     * 3. Stores the bloom filter parameters
+     * 3. Stores the bloom filter parameters and creates the pools of filters
      * 4. Creates a AMSs for every possible state
      * 5. Creates an AMD
      * 6. Creates the AMSs counters
      * 7. Creates the AMD counter
+     * 8. Creates the tables of the false positive probabilities
      *
      * @param possibleStates the possible states that an application can select
      * @param selectedState the selected state from the possible ones
@@ -109,23 +140,16 @@ public class Disseminator {
         // 2. Sets the possible state.
         this.possibleStates=new HashSet<State>();
         this.possibleStates.addAll(possibleStates);
-        // 3. Stores the bloom filter parameters
+        // 3. Stores the bloom filter parameters and creates the pools of filters
         this.parameters=new HashMap<BloomFilterParams, Object>();
         this.parameters.putAll(parameters);
+        this.AMSPool=new MembershipFilterPool(this.possibleStates.size());
+        this.AMDPool=new MembershipFilterPool(1);
         // 4. Creates a AMSs for every possible state
-        switch(this.getBloomFilterType()){
-            case SIMPLE:
-                this.AMSs=new HashMap<State, CBloomFilter>();
-                break;
-            case COUNTING:
-                this.AMSs=new HashMap<State, CCountingFilter>();
-                break;
-            default:
-                // other types of bloom filters
-        }
+        this.AMSs=new HashMap<State, MembershipFilter>();
         this.createAMSs();
         // 5. Creates an AMD
-        this.AMD=new CBloomFilter(this.initAMD());
+        this.AMD=this.createAMD();
         // 6. Creates the AMSs counters
         this.AMSCounters=new HashMap<UUID, Integer>();
         Iterator<State> it=this.possibleStates.iterator();
@@ -134,6 +158,59 @@ public class Disseminator {
         }
         // 7. Creates the AMD counter
         this.AMDCounter=0;
+        // 8. Creates the tables of the false positive probabilities
+        this.AMSFalsePositives=new FalsePositiveTable();
+        this.AMDFalsePositives=new FalsePositiveTable();
+    }
+
+    /**
+     * Replaces the bloom filter parameters and creates new empty AMD and AMSs.
+     * The pooled filters are dropped. Nothing changes if the parameters are
+     * the same.
+     *
+     * @param parameters the new parameterization of the bloom filters
+     */
+    public void resize(Map<BloomFilterParams, Object> parameters){
+        if(this.parameters.entrySet().containsAll(parameters.entrySet())){
+            return;
+        }
+        this.parameters.putAll(parameters);
+        this.AMSFalsePositives.clear();
+        this.AMDFalsePositives.clear();
+        this.AMSPool.clear();
+        this.AMDPool.clear();
+        this.standbyAMSMatrix=null;
+        this.retiredAMSMatrix=null;
+        this.AMD=this.createAMD();
+        this.AMDCounter=0;
+        this.AMSs.clear();
+        this.createAMSs();
+        Iterator<State> it=this.possibleStates.iterator();
+        while(it.hasNext()){
+            this.getAMSCounters().put(it.next().getStateId(), 0);
+        }
+    }
+
+    /**
+     * @return a copy of the current parameterization of the bloom filters
+     */
+    public HashMap<BloomFilterParams, Object> getParameters(){
+        return new HashMap<BloomFilterParams, Object>(this.parameters);
+    }
+
+    /**
+     * Clears the filters retired in the last change of the possible states so
+     * that they can be reused in the next one. The AMD and AMSs in use are not
+     * affected.
+     */
+    public void prepareNextEpoch(){
+        this.AMSPool.prepare();
+        this.AMDPool.prepare();
+        if(this.retiredAMSMatrix!=null){
+            this.retiredAMSMatrix.clear();
+            this.standbyAMSMatrix=this.retiredAMSMatrix;
+            this.retiredAMSMatrix=null;
+        }
     }
 
     /**
@@ -145,71 +222,107 @@ public class Disseminator {
         Iterator<State> it=this.AMSs.keySet().iterator();
         while(it.hasNext()){
             State state=it.next();
-            switch(this.getBloomFilterType()){
-                case SIMPLE:
-                    CBloomFilter bf=(CBloomFilter)this.AMSs.get(state);
-                    bf.clear();
-                    break;
-                case COUNTING:
-                    CCountingFilter cf=(CCountingFilter)this.AMSs.get(state);
-                    cf.clear();
-                    break;
-                default:
-                    // other type of bloom filter
+            if(this.AMSMatrix==null){
+                this.AMSs.get(state).clear();
             }
             this.getAMSCounters().put(state.getStateId(), 0);
         }
+        if(this.AMSMatrix!=null){
+            this.AMSMatrix.clear();
+        }
     }
 
     /**
-     * Creates and parameterizes a hash factory for the AMSs bloom filter.
+     * Creates and parameterizes an AMS bloom filter.
      *
-     * @return a hash factory the parameterizes the AMSs bloom filter
+     * @return an AMS bloom filter of the AMS type, scalable if a target false
+     * positive probability is given
      */
-    private CHashFactory initAMS(){
+    private MembershipFilter createAMS(){
         int type=((Integer)parameters.get(BloomFilterParams.AMS_HASH_TYPE)).intValue();
         int m=((Integer)parameters.get(BloomFilterParams.AMS_M)).intValue();
         int k=((Integer)parameters.get(BloomFilterParams.AMS_K)).intValue();
-        return new CHashFactory(type, m, k);
+        Double targetFP=(Double)parameters.get(BloomFilterParams.AMS_TARGET_FP);
+        return MembershipFilterFactory.create(this.getBloomFilterType(), type, m, k, targetFP);
     }
 
     /**
-     * Creates and parameterizes a hash factory for the AMDs bloom filter.
+     * Creates and parameterizes the AMD bloom filter.
      *
-     * @return a hash factory the parameterizes the AMDs bloom filter
+     * @return a simple AMD bloom filter, scalable if a target false positive
+     * probability is given
      */
-    private CHashFactory initAMD(){
+    private MembershipFilter createAMD(){
         int type=((Integer)parameters.get(BloomFilterParams.AMD_HASH_TYPE)).intValue();
         int m=((Integer)parameters.get(BloomFilterParams.AMD_M)).intValue();
         int k=((Integer)parameters.get(BloomFilterParams.AMD_K)).intValue();
-        return new CHashFactory(type, m, k);
+        Double targetFP=(Double)parameters.get(BloomFilterParams.AMD_TARGET_FP);
+        return MembershipFilterFactory.create(BloomFilterType.SIMPLE, type, m, k, targetFP);
     }
 
     /**
-     * Creates an AMSs bloom filter (simple or counting) for every possible state
+     * Assigns an AMSs bloom filter for every possible state. Cleared filters
+     * are taken from the pool and new ones are created only if the pool is
+     * empty. In case of bit-sliced bloom filters, the AMSs are the columns of a
+     * single matrix and every possible state is assigned a column. The standby
+     * matrix is used if it has enough columns.
      */
     private void createAMSs(){
+        if(this.getBloomFilterType()==BloomFilterType.BIT_SLICED){
+            int columns=this.possibleStates.size();
+            if(this.standbyAMSMatrix!=null && this.standbyAMSMatrix.getColumns()>=columns){
+                this.AMSMatrix=this.standbyAMSMatrix;
+                this.standbyAMSMatrix=null;
+            }
+            else{
+                int m=((Integer)parameters.get(BloomFilterParams.AMS_M)).intValue();
+                int k=((Integer)parameters.get(BloomFilterParams.AMS_K)).intValue();
+                this.AMSMatrix=new BitSlicedBloomFilterMatrix(m, k, columns);
+            }
+            if(this.AMSColumns==null || this.AMSColumns.length<this.AMSMatrix.getColumns()){
+                this.AMSColumns=new State[this.AMSMatrix.getColumns()];
+            }
+            else{
+                Arrays.fill(this.AMSColumns, null);
+            }
+            int column=0;
+            for(State state:this.possibleStates){
+                this.AMSColumns[column]=state;
+                this.AMSs.put(state, this.AMSMatrix.getFilter(column));
+                column++;
+            }
+            return;
+        }
+        this.AMSMatrix=null;
         Iterator<State> it=this.possibleStates.iterator();
-        IFilter filter=null;
         while(it.hasNext()){
-            switch(this.getBloomFilterType()){
-                case SIMPLE:
-                    filter=new CBloomFilter(this.initAMS());
-                    break;
-                case COUNTING:
-                    filter=new CCountingFilter(this.initAMS());
-                    break;
-                default:
-                    // other type of bloom filter
+            MembershipFilter filter=this.AMSPool.poll();
+            this.AMSs.put(it.next(), filter==null ? this.createAMS() : filter);
+        }
+    }
+
+    /**
+     * Retires the AMSs bloom filters to the pool, or the bit-sliced matrix.
+     * They are cleared when the next epoch is prepared.
+     */
+    private void retireAMSs(){
+        if(this.AMSMatrix!=null){
+            this.retiredAMSMatrix=this.AMSMatrix;
+            this.AMSMatrix=null;
+        }
+        else{
+            for(MembershipFilter filter:this.AMSs.values()){
+                this.AMSPool.retire(filter);
             }
-            this.AMSs.put(it.next(), filter);
         }
+        this.AMSs.clear();
     }
 
     /**
      * Checks the bloom filter parameters for the type used for AMS bloom filter
      *
-     * @return the bloom filter type, SIMPLE or COUNTING
+     * @return the bloom filter type, SIMPLE, COUNTING, BIT_SLICED, BLOCKED or
+     * CUCKOO
      */
     private BloomFilterType getBloomFilterType(){
         return (BloomFilterType)parameters.get(BloomFilterParams.AMS_TYPE);
@@ -225,26 +338,13 @@ public class Disseminator {
      * membership or the type of the bloom filter is inknown
      */
     public boolean addAMSMemebership(State state, Finger aggregator){
-        if(this.AMSs.get(state)!=null){
-            switch(this.getBloomFilterType()){
-                case SIMPLE:
-                    CBloomFilter bf=(CBloomFilter)this.AMSs.get(state);
-                    if(bf.contains(aggregator.toString())){
-                       return false;
-                    }
-                    bf.add(aggregator.toString());
-                    break;
-                case COUNTING:
-                    CCountingFilter cf=(CCountingFilter)this.AMSs.get(state);
-                    if(cf.contains(aggregator.toString())){
-                        return false;
-                    }
-                    cf.add(aggregator.toString());
-                    break;
-                default:
-                    return false;
-                    // other type of bloom filter
+        MembershipFilter filter=this.AMSs.get(state);
+        if(filter!=null){
+            long digest=MembershipDigest.digest(aggregator);
+            if(filter.contains(digest)){
+                return false;
             }
+            filter.add(digest);
             Integer counter=((Integer)this.getAMSCounters().get(state.getStateId())).intValue()+1;
             this.getAMSCounters().put(state.getStateId(), counter);
             return true;
@@ -260,8 +360,9 @@ public class Disseminator {
      * @return false if the membership of the aggregator does not exist
      */
     public boolean addAMDMembership(Finger aggregator){
-        if(!this.AMD.contains(aggregator.toString())){
-            this.AMD.add(aggregator.toString());
+        long digest=MembershipDigest.digest(aggregator);
+        if(!this.AMD.contains(digest)){
+            this.AMD.add(digest);
             this.AMDCounter++;
             return true;
         }
@@ -269,29 +370,82 @@ public class Disseminator {
     }
 
     /**
-     * Removes a state membership from an AMS counting bloom filter given an
-     * associated state.
+     * Removes a state membership from an AMS counting bloom filter or cuckoo
+     * filter given an associated state.
      *
      * @param state the state from which an aggregator membership is removed
      * @param aggregator the aggregator membership to remove
      *
-     * @return false if the AMS bloom filter is not counting or the membership
-     * does not exist
+     * @return false if the AMS bloom filter does not support removals or the
+     * membership does not exist
      */
     public boolean removeAMSMembership(State state, Finger aggregator){
-        if(this.getBloomFilterType()==BloomFilterType.COUNTING){
-            CCountingFilter cf=(CCountingFilter)this.AMSs.get(state);
-            if(cf.contains(aggregator.toString())){
-                cf.remove(aggregator.toString());
-                Integer counter=((Integer)this.getAMSCounters().get(state.getStateId())).intValue()-1;
-                this.getAMSCounters().put(state.getStateId(), counter);
-                return true;
-            }
-            return false;
+        MembershipFilter filter=this.AMSs.get(state);
+        long digest=MembershipDigest.digest(aggregator);
+        if(filter!=null && filter.contains(digest) && filter.remove(digest)){
+            Integer counter=((Integer)this.getAMSCounters().get(state.getStateId())).intValue()-1;
+            this.getAMSCounters().put(state.getStateId(), counter);
+            return true;
         }
         return false;
     }
 
+    /**
+     * Sets a time window after which the contributions expire in the
+     * aggregators if they are not acknowledged again. The aggregations expire
+     * in the disseminator after half the window to refresh them in time.
+     *
+     * @param window the time window in milliseconds
+     */
+    public void setWindow(double window){
+        this.window=window;
+        if(this.aggregations==null){
+            this.aggregations=new ExpirationQueue<Aggregation>();
+        }
+    }
+
+    /**
+     * Sets the weight of the selected state in the aggregation.
+     *
+     * @param weight the positive weight or null if the state is not weighted
+     */
+    public void setWeight(Double weight){
+        this.weight=weight;
+    }
+
+    /**
+     * @return the weight of the selected state or null if it is not weighted
+     */
+    public Double getWeight(){
+        return this.weight;
+    }
+
+    /**
+     * Advances the time of the disseminator and removes the AMS memberships
+     * of the acknowledged states for the aggregations that have not been
+     * acknowledged again within half the window, so that the aggregators are
+     * outdated and pushed again while their contributions are still held.
+     *
+     * @param time the current time in milliseconds
+     *
+     * @return the aggregators of the expired aggregations
+     */
+    public List<Finger> advanceTime(double time){
+        this.time=time;
+        List<Finger> expired=new ArrayList<Finger>();
+        if(this.aggregations==null){
+            return expired;
+        }
+        ExpirationQueue.Entry<Aggregation> entry=this.aggregations.poll(time-this.window/2);
+        while(entry!=null){
+            Aggregation aggregation=entry.getValue();
+            this.removeAMSMembership(aggregation.state, aggregation.aggregator);
+            expired.add(aggregation.aggregator);
+            entry=this.aggregations.poll(time-this.window/2);
+        }
+        return expired;
+    }
+
     /**
      * Changes the selected state as imposed by the application
      *
@@ -345,6 +499,26 @@ public class Disseminator {
         return amsSumCounters/counters.size();
     }
 
+    /**
+     * Counts the increments that found a saturated counter in the AMS counting
+     * bloom filters or the memberships that did not fit in the AMS cuckoo
+     * filters.
+     *
+     * @return the sum of the counter overflows of all the AMS bloom filters
+     */
+    public int getAMSOverflows(){
+        int overflows=0;
+        for(MembershipFilter filter:this.AMSs.values()){
+            if(filter instanceof NibbleCountingBloomFilter){
+                overflows+=((NibbleCountingBloomFilter)filter).getOverflows();
+            }
+            else if(filter instanceof CuckooFilter){
+                overflows+=((CuckooFilter)filter).getOverflows();
+            }
+        }
+        return overflows;
+    }
+
     /**
      * @return the AMSCounters
      */
@@ -363,18 +537,29 @@ public class Disseminator {
 
     /**
      * Clears the existing possible states, all the bloom filters and their
-     * counters. It adds the new states and creates the new bloom filters and
-     * the new counters
+     * counters. It adds the new states and assigns new bloom filters and the
+     * new counters.
+     *
+     * The bloom filters are double-buffered: the AMD and the AMSs in use are
+     * retired and swapped with cleared ones of the pools. The retired filters
+     * are cleared by <code>prepareNextEpoch</code>, after which changing the
+     * possible states does not allocate or zero any filter.
      *
      * @param states the set with the new possible states
      */
     public void setPossibleStates(Collection<State> states){
+        if(this.aggregations!=null){
+            this.aggregations.clear();
+        }
+        this.retireAMSs();
         this.possibleStates.clear();
-        this.AMSs.clear();
         this.getAMSCounters().clear();
-        this.AMD.clear();
+        this.AMDPool.retire(this.AMD);
+        MembershipFilter filter=this.AMDPool.poll();
+        this.AMD=filter==null ? this.createAMD() : filter;
         this.AMDCounter=0;
         this.possibleStates.addAll(states);
+        this.AMSPool.setCapacity(this.possibleStates.size());
         this.createAMSs();
         Iterator<State> it=this.possibleStates.iterator();
         while(it.hasNext()){
@@ -389,41 +574,37 @@ public class Disseminator {
      * @param filter a bloom filter
      * @param n the nummer of elemets added in the bloom filter
      */
-    public double getFalsePositiveProbability(IFilter filter, int n){
-        double k=filter.hash().k();
-        double m=filter.container().size();
-        double p=Math.pow((1-Math.pow(Math.E, -k*n/m)), k);
-        return p;
+    public double getFalsePositiveProbability(MembershipFilter filter, int n){
+        return filter.getFalsePositiveProbability(n);
     }
 
     /**
-     * Calculates the false positive probabilities for every AMS bloom filter
+     * Calculates the false positive probabilities for every AMS bloom filter.
+     * The map is reused and overwritten by the next call, its entries are
+     * replaced in place unless the possible states have changed.
      *
      * @return a map of the false positive probailities fom every AMS bloom filter
      * of the states
     */
     public HashMap<UUID, Double> getAMSFalsePositiveProbabilities(){
-        HashMap<UUID, Double> fp=new HashMap<UUID, Double>();
-        Iterator<State> it=this.AMSs.keySet().iterator();
-        while(it.hasNext()){
-            State possibleState=it.next();
-            int n=((Integer)this.getAMSCounters().get(possibleState.getStateId())).intValue();
-            double p=0.0;
-            switch(this.getBloomFilterType()){
-                case SIMPLE:
-                    CBloomFilter bf=(CBloomFilter)this.AMSs.get(possibleState);
-                    p=this.getFalsePositiveProbability(bf, n);
-                    break;
-                case COUNTING:
-                    CCountingFilter cf=(CCountingFilter)this.AMSs.get(possibleState);
-                    p=this.getFalsePositiveProbability(cf, n);
-                    break;
-                default:
-                    // other type of bloom filter
-            }
-            fp.put(possibleState.getStateId(), p);
+        if(this.AMSFalsePositiveProbabilities==null){
+            this.AMSFalsePositiveProbabilities=new HashMap<UUID, Double>();
+        }
+        this.putAMSFalsePositiveProbabilities();
+        if(this.AMSFalsePositiveProbabilities.size()>this.AMSs.size()){
+            // states that are not possible any more are dropped
+            this.AMSFalsePositiveProbabilities.clear();
+            this.putAMSFalsePositiveProbabilities();
+        }
+        return this.AMSFalsePositiveProbabilities;
+    }
+
+    private void putAMSFalsePositiveProbabilities(){
+        for(Map.Entry<State, MembershipFilter> ams:this.AMSs.entrySet()){
+            int n=this.getAMSCounter(ams.getKey());
+            double p=this.AMSFalsePositives.get(ams.getValue(), n);
+            this.AMSFalsePositiveProbabilities.put(ams.getKey().getStateId(), p);
         }
-        return fp;
     }
 
     /**
@@ -432,12 +613,12 @@ public class Disseminator {
      * @return the average false positive probability for the AMS bloom filters
     */
     public double getAMSAverageFalsePositiveProbabilities(){
-        HashMap<UUID, Double> fps=this.getAMSFalsePositiveProbabilities();
         double sum=0.0;
-        for(Double fp:fps.values()){
-            sum+=fp;
+        for(Map.Entry<State, MembershipFilter> ams:this.AMSs.entrySet()){
+            int n=this.getAMSCounter(ams.getKey());
+            sum+=this.AMSFalsePositives.get(ams.getValue(), n);
         }
-        return sum/fps.size();
+        return sum/this.AMSs.size();
     }
 
      /**
@@ -446,7 +627,7 @@ public class Disseminator {
      * @return the false positive probability of the AMD bloom filter
      */
     public double getAMDFalsePositiveProbability(){
-        return this.getFalsePositiveProbability(AMD, AMDCounter);
+        return this.AMDFalsePositives.get(AMD, AMDCounter);
     }
 
     /**
@@ -455,7 +636,7 @@ public class Disseminator {
      * @return true if the AMD bloom filter contains a hashed item
      */
     public boolean checkAMDMembership(Finger aggregator){
-        return this.AMD.contains(aggregator.toString());
+        return this.AMD.contains(MembershipDigest.digest(aggregator));
     }
 
     /**
@@ -465,23 +646,11 @@ public class Disseminator {
      * membership of the given aggregator
      */
     public boolean checkAMSMembership(State state, Finger aggregator){
-        switch(this.getBloomFilterType()){
-            case SIMPLE:
-                CBloomFilter bf=(CBloomFilter)this.AMSs.get(state);
-                if(bf.contains(aggregator.toString())){
-                    return true;
-                }
-                return false;
-            case COUNTING:
-                CCountingFilter cf=(CCountingFilter)this.AMSs.get(state);
-                if(cf.contains(aggregator.toString())){
-                    return true;
-                }
-                return false;
-            default:
-                return false;
-                // other type of bloom filter
+        MembershipFilter filter=this.AMSs.get(state);
+        if(filter!=null && filter.contains(MembershipDigest.digest(aggregator))){
+            return true;
         }
+        return false;
     }
 
     /**
@@ -497,44 +666,40 @@ public class Disseminator {
      *
      * @param aggregator the aggregator in which the disseminator report is sent.
      *
-     * @return the hash map representing the dissemination report
+     * @return the dissemination report
      */
-    public HashMap<DisseminatorReport, Object> createDisseminatorReport(Finger aggregator){
-        HashMap<DisseminatorReport, Object> report=new HashMap<DisseminatorReport, Object>();
-        report.put(DisseminatorReport.SELECTED_STATE, this.selectedState);
+    public DisseminatorReport createDisseminatorReport(Finger aggregator){
         HashSet<State> posAMS=new HashSet<State>();
         HashMap<UUID, Double> posAMSFalsePos=new HashMap<UUID, Double>();
-        Iterator<State> it=AMSs.keySet().iterator();
-        while(it.hasNext()){
-            State state=it.next();
-            switch(this.getBloomFilterType()){
-                case SIMPLE:
-                    CBloomFilter bf=(CBloomFilter)this.AMSs.get(state);
-                    if(bf.contains(aggregator.toString())){
-                        posAMS.add(state);
-                        int n=this.getAMSCounter(state);
-                        double fp=this.getFalsePositiveProbability(bf, n);
-                        posAMSFalsePos.put(state.getStateId(), fp);
-                    }
-                    break;
-                case COUNTING:
-                    CCountingFilter cf=(CCountingFilter)this.AMSs.get(state);;
-                    if(cf.contains(aggregator.toString())){
+        long digest=MembershipDigest.digest(aggregator);
+        if(this.AMSMatrix!=null){
+            long[] positive=new long[this.AMSMatrix.getWords()];
+            if(this.AMSMatrix.contains(digest, positive)){
+                for(int w=0; w<positive.length; w++){
+                    long columns=positive[w];
+                    while(columns!=0L){
+                        State state=this.AMSColumns[(w<<6)+Long.numberOfTrailingZeros(columns)];
                         posAMS.add(state);
                         int n=this.getAMSCounter(state);
-                        double fp=this.getFalsePositiveProbability(cf, n);
+                        double fp=this.AMSFalsePositives.get(this.AMSs.get(state), n);
                         posAMSFalsePos.put(state.getStateId(), fp);
+                        columns&=columns-1;
                     }
-                    break;
-                default:
-                    // other type of bloom filter
+                }
             }
         }
-        report.put(DisseminatorReport.POSITIVE_AMS, posAMS);
-        report.put(DisseminatorReport.POSITIVE_AMS_FP, posAMSFalsePos);
-        report.put(DisseminatorReport.POSITIVE_AMD, this.AMD.contains(aggregator.toString()));
-        report.put(DisseminatorReport.AMD_FP, this.getFalsePositiveProbability(AMD, AMDCounter));
-        return report;
+        else{
+            for(Map.Entry<State, MembershipFilter> ams:this.AMSs.entrySet()){
+                if(ams.getValue().contains(digest)){
+                    State state=ams.getKey();
+                    posAMS.add(state);
+                    int n=this.getAMSCounter(state);
+                    double fp=this.AMSFalsePositives.get(ams.getValue(), n);
+                    posAMSFalsePos.put(state.getStateId(), fp);
+                }
+            }
+        }
+        return new DisseminatorReport(this.selectedState, posAMS, posAMSFalsePos, this.AMD.contains(digest), this.getAMDFalsePositiveProbability(), this.weight);
     }
 
     /**
@@ -547,19 +712,38 @@ public class Disseminator {
      *
      * @return tue is aggregation is acknowldged
      */
-    public boolean receiveAggregatorReport(Finger aggregator, HashMap<AggregatorReport, Object> report){
-        boolean ack=((Boolean)report.get(AggregatorReport.ACK)).booleanValue();
+    public boolean receiveAggregatorReport(Finger aggregator, AggregatorReport report){
+        boolean ack=report.isAcknowledged();
         if(ack){
             this.addAMDMembership(aggregator);
-            State AMSRemoval=(State)report.get(AggregatorReport.AMS_REMOVAL);
+            State AMSRemoval=report.getAMSRemoval();
             if(AMSRemoval!=null){
                 this.removeAMSMembership(AMSRemoval, aggregator);
             }
-            State AMSAddition=(State)report.get(AggregatorReport.AMS_ADDITION);
+            State AMSAddition=report.getAMSAddition();
             if(AMSAddition!=null){
                 this.addAMSMemebership(AMSAddition, aggregator);
             }
+            if(this.aggregations!=null){
+                State state=AMSAddition==null ? this.selectedState : AMSAddition;
+                this.aggregations.put(MembershipDigest.digest(aggregator), new Aggregation(aggregator, state), this.time);
+            }
         }
         return ack;
     }
+
+    /**
+     * An acknowledged aggregation: the aggregator and the state that it
+     * aggregated, whose AMS membership expires
+     */
+    private static class Aggregation {
+
+        private final Finger aggregator;
+        private final State state;
+
+        private Aggregation(Finger aggregator, State state){
+            this.aggregator=aggregator;
+            this.state=state;
+        }
+    }
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import dsutil.generic.state.ArithmeticState;
+import dsutil.protopeer.services.aggregation.AggregationFunction;
+import dsutil.protopeer.services.aggregation.AggregationType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable copy of all the aggregates of an aggregation state at a given
+ * moment. The aggregates of arithmetic states are final double fields and the
+ * aggregates of arithmetic list states are private copies of the arrays that
+ * are never modified, as are the copies of the quantile sketch, the histogram
+ * counts and the most frequent states. A snapshot can be shared with any thread after it is
+ * published, e.g. through a volatile reference, and it is read without locks.
+ *
+ * @author Evangelos
+ */
+public final class AggregateSnapshot {
+
+    private final AggregationType aggregationType;
+    private final int aggregationEpoch;
+    private final long version;
+
+    private final double sum;
+    private final double sumSquare;
+    private final double max;
+    private final double min;
+    private final double avg;
+    private final double stdev;
+    private final double count;
+
+    private final double[] sums;
+    private final double[] sumSquares;
+    private final double[] maxs;
+    private final double[] mins;
+    private final double[] avgs;
+    private final double[] stdevs;
+    private final double[] counts;
+
+    private final QuantileSketch quantiles;
+    private final double distinctCount;
+    private final long[] histogram;
+    private final Map<UUID, Long> topK;
+
+    /**
+     * Creates the snapshot of the aggregates of arithmetic states
+     */
+    AggregateSnapshot(int aggregationEpoch, long version, double sum, double sumSquare, double max, double min,
+            double avg, double stdev, double count, QuantileSketch quantiles, double distinctCount, long[] histogram,
+            Map<UUID, Long> topK){
+        this.aggregationType=AggregationType.ARITHMETIC;
+        this.aggregationEpoch=aggregationEpoch;
+        this.version=version;
+        this.sum=sum;
+        this.sumSquare=sumSquare;
+        this.max=max;
+        this.min=min;
+        this.avg=avg;
+        this.stdev=stdev;
+        this.count=count;
+        this.sums=null;
+        this.sumSquares=null;
+        this.maxs=null;
+        this.mins=null;
+        this.avgs=null;
+        this.stdevs=null;
+        this.counts=null;
+        this.quantiles=quantiles;
+        this.distinctCount=distinctCount;
+        this.histogram=histogram;
+        this.topK=topK==null ? null : Collections.unmodifiableMap(topK);
+    }
+
+    /**
+     * Creates the snapshot of the aggregates of arithmetic list states by
+     * copying the first size elements of the arrays
+     */
+    AggregateSnapshot(int aggregationEpoch, long version, int size, double[] sums, double[] sumSquares,
+            double[] maxs, double[] mins, double[] avgs, double[] stdevs, double[] counts, QuantileSketch quantiles,
+            double distinctCount, long[] histogram, Map<UUID, Long> topK){
+        this.aggregationType=AggregationType.ARITHMETIC_LIST;
+        this.aggregationEpoch=aggregationEpoch;
+        this.version=version;
+        this.sum=Double.NaN;
+        this.sumSquare=Double.NaN;
+        this.max=Double.NaN;
+        this.min=Double.NaN;
+        this.avg=Double.NaN;
+        this.stdev=Double.NaN;
+        this.count=Double.NaN;
+        this.sums=copy(sums, size);
+        this.sumSquares=copy(sumSquares, size);
+        this.maxs=copy(maxs, size);
+        this.mins=copy(mins, size);
+        this.avgs=copy(avgs, size);
+        this.stdevs=copy(stdevs, size);
+        this.counts=copy(counts, size);
+        this.quantiles=quantiles;
+        this.distinctCount=distinctCount;
+        this.histogram=histogram;
+        this.topK=topK==null ? null : Collections.unmodifiableMap(topK);
+    }
+
+    /**
+     * Returns the aggregate of an aggregation function as
+     * <code>PrimitiveAggregationState</code> does.
+     *
+     * @param function the aggregation function
+     * @return the aggregate object, a Double or a new list of arithmetic states
+     */
+    public Object getAggregate(AggregationFunction function){
+        if(aggregationType==AggregationType.ARITHMETIC){
+            return this.getValue(function);
+        }
+        double[] values=this.getValues(function);
+        List<ArithmeticState> states=new ArrayList<ArithmeticState>(this.getNumberOfStates());
+        for(int i=0; values!=null && i<values.length; i++){
+            states.add(new ArithmeticState(values[i]));
+        }
+        return states;
+    }
+
+    /**
+     * The aggregate of an aggregation function of arithmetic states
+     *
+     * @param function the aggregation function
+     * @return the aggregate, NaN for the aggregates of arithmetic list states
+     */
+    public double getValue(AggregationFunction function){
+        switch(function){
+            case SUM:
+                return sum;
+            case SUM_SQR:
+                return sumSquare;
+            case MAX:
+                return max;
+            case MIN:
+                return min;
+            case AVG:
+                return avg;
+            case STDEV:
+                return stdev;
+            case COUNT:
+                return count;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * An element of the aggregate of an aggregation function of arithmetic
+     * list states
+     *
+     * @param function the aggregation function
+     * @param index the element of the list aggregates
+     * @return the aggregate of the element
+     */
+    public double getValue(AggregationFunction function, int index){
+        double[] values=this.getValues(function);
+        return values==null ? Double.NaN : values[index];
+    }
+
+    /**
+     * @return the number of elements of the aggregates of arithmetic list
+     * states, 0 for arithmetic states
+     */
+    public int getNumberOfStates(){
+        return sums==null ? 0 : sums.length;
+    }
+
+    public AggregationType getAggregationType(){
+        return aggregationType;
+    }
+
+    /**
+     * @return the aggregation epoch of the aggregates
+     */
+    public int getAggregationEpoch(){
+        return aggregationEpoch;
+    }
+
+    /**
+     * @return the version of the aggregation state when the snapshot was
+     * created
+     */
+    public long getVersion(){
+        return version;
+    }
+
+    /**
+     * Estimates a quantile of the aggregated arithmetic states.
+     *
+     * @param quantile the rank of the value in [0, 1], e.g. 0.5 for the median
+     * @return the estimated quantile or NaN if there are no aggregates or no
+     * quantile sketch
+     */
+    public double getQuantile(double quantile){
+        return quantiles==null ? Double.NaN : quantiles.getQuantile(quantile);
+    }
+
+    /**
+     * @return the estimated number of distinct values or NaN without a
+     * distinct values counter
+     */
+    public double getDistinctCount(){
+        return distinctCount;
+    }
+
+    /**
+     * @return a copy of the counts of the histogram buckets or null without a
+     * histogram
+     */
+    public long[] getHistogram(){
+        return histogram==null ? null : histogram.clone();
+    }
+
+    /**
+     * @return the unmodifiable most frequent states with their estimated
+     * counts, ordered by decreasing count, or null without a top-k sketch
+     */
+    public Map<UUID, Long> getTopK(){
+        return topK;
+    }
+
+    private double[] getValues(AggregationFunction function){
+        if(sums==null){
+            return null;
+        }
+        switch(function){
+            case SUM:
+                return sums;
+            case SUM_SQR:
+                return sumSquares;
+            case MAX:
+                return maxs;
+            case MIN:
+                return mins;
+            case AVG:
+                return avgs;
+            case STDEV:
+                return stdevs;
+            case COUNT:
+                return counts;
+            default:
+                return null;
+        }
+    }
+
+    private static double[] copy(double[] values, int size){
+        double[] copy=new double[size];
+        System.arraycopy(values, 0, copy, 0, size);
+        return copy;
+    }
+}
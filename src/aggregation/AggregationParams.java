@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+/**
+ * Optional parameters of the aggregation state of the aggregator. All of them
+ * are disabled if they are not given.
+ *
+ * EXACT_EXTREMES: a Boolean. The MAX and MIN remain exact after removals, as
+ * the added values are kept in a multiset.
+ *
+ * COMPENSATED: a Boolean. The SUM and SUM_SQR are kept with compensated
+ * summation and the STDEV is derived from a second central moment that is
+ * updated as in Welford's algorithm, so that the aggregates do not drift after
+ * a long sequence of additions and removals.
+ *
+ * QUANTILE_ACCURACY: a Double in (0, 1). The values of arithmetic states are
+ * counted in a quantile sketch, so that quantiles such as the median are
+ * estimated within this relative accuracy.
+ *
+ * QUANTILE_BINS: an Integer, the number of bins of the quantile sketch for the
+ * positive and for the negative values, 1024 if it is not given. It fixes the
+ * memory of the sketch regardless of the number of aggregated states.
+ *
+ * DISTINCT_PRECISION: an Integer p in [4, 16]. The values of the added states
+ * are counted in a HyperLogLog counter of 2^p one-byte registers that
+ * estimates the number of distinct values with a standard error of
+ * 1.04/sqrt(2^p).
+ *
+ * HISTOGRAM_EDGES: a double[] of increasing bucket edges. The values of
+ * arithmetic states are counted exactly in a histogram with these buckets.
+ *
+ * TOP_K: an Integer k. The identifiers of the added states are counted in a
+ * count-min sketch to estimate the k most frequent states.
+ *
+ * TOP_K_WIDTH: an Integer, the number of counters in every row of the
+ * count-min sketch, 1024 if it is not given.
+ *
+ * WINDOW: a Double, a time window in milliseconds. The contributions of the
+ * disseminators and the memberships of the aggregators expire when they are
+ * not refreshed within the window, so that stale states are removed from the
+ * aggregates without restarting the aggregation epoch. The disseminators
+ * push their states again after half the window to refresh them in time.
+ *
+ * WEIGHT: a Double, the default positive weight of the selected states of
+ * new sessions. It is sent in the disseminator reports and the SUM, SUM_SQR
+ * and COUNT become weighted, so that the AVG and STDEV are the weighted mean
+ * and standard deviation. The weight of a session can be changed when its
+ * aggregation or its selected state is requested.
+ *
+ * @author Evangelos
+ */
+public enum AggregationParams {
+    EXACT_EXTREMES,
+    COMPENSATED,
+    QUANTILE_ACCURACY,
+    QUANTILE_BINS,
+    DISTINCT_PRECISION,
+    HISTOGRAM_EDGES,
+    TOP_K,
+    TOP_K_WIDTH,
+    WINDOW,
+    WEIGHT
+}
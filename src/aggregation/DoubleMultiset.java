@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+/**
+ * A multiset of double values that provides the minimum and maximum value
+ * under additions and removals. It is a treap of the distinct values with
+ * their counts, stored in primitive arrays. Additions, removals and the
+ * minimum and maximum take O(log n) expected time, where n is the number of
+ * distinct values. Values are compared with <code>Double.compare</code>.
+ *
+ * @author Evangelos
+ */
+public class DoubleMultiset {
+
+    private final static int NIL=-1;
+    private final static int INITIAL_CAPACITY=16;
+
+    private double[] values;
+    private int[] counts;
+    private int[] left;
+    private int[] right;
+    private int[] priorities;
+    private int root;
+    private int nodes;
+    private int free;
+    private int size;
+    private int seed;
+    private boolean removed;
+
+    /**
+     * Initializes an empty multiset
+     */
+    public DoubleMultiset(){
+        this.values=new double[INITIAL_CAPACITY];
+        this.counts=new int[INITIAL_CAPACITY];
+        this.left=new int[INITIAL_CAPACITY];
+        this.right=new int[INITIAL_CAPACITY];
+        this.priorities=new int[INITIAL_CAPACITY];
+        this.seed=0x5DEECE66;
+        this.clear();
+    }
+
+    /**
+     * Adds a value in the multiset
+     *
+     * @param value the added value
+     */
+    public void add(double value){
+        root=this.insert(root, value);
+        size++;
+    }
+
+    /**
+     * Removes one occurrence of a value from the multiset
+     *
+     * @param value the removed value
+     *
+     * @return false if the value is not contained in the multiset
+     */
+    public boolean remove(double value){
+        removed=false;
+        root=this.delete(root, value);
+        if(removed){
+            size--;
+        }
+        return removed;
+    }
+
+    /**
+     * @return the minimum value or NaN if the multiset is empty
+     */
+    public double min(){
+        if(root==NIL){
+            return Double.NaN;
+        }
+        int node=root;
+        while(left[node]!=NIL){
+            node=left[node];
+        }
+        return values[node];
+    }
+
+    /**
+     * @return the maximum value or NaN if the multiset is empty
+     */
+    public double max(){
+        if(root==NIL){
+            return Double.NaN;
+        }
+        int node=root;
+        while(right[node]!=NIL){
+            node=right[node];
+        }
+        return values[node];
+    }
+
+    /**
+     * @return the number of values in the multiset, counting the occurrences
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Removes all the values from the multiset. The arrays are kept.
+     */
+    public void clear(){
+        this.root=NIL;
+        this.nodes=0;
+        this.free=NIL;
+        this.size=0;
+    }
+
+    private int insert(int node, double value){
+        if(node==NIL){
+            return this.createNode(value);
+        }
+        int c=Double.compare(value, values[node]);
+        if(c==0){
+            counts[node]++;
+        }
+        else if(c<0){
+            // the child is inserted first, as the arrays may grow
+            int child=this.insert(left[node], value);
+            left[node]=child;
+            if(priorities[child]>priorities[node]){
+                node=this.rotateRight(node);
+            }
+        }
+        else{
+            int child=this.insert(right[node], value);
+            right[node]=child;
+            if(priorities[child]>priorities[node]){
+                node=this.rotateLeft(node);
+            }
+        }
+        return node;
+    }
+
+    private int delete(int node, double value){
+        if(node==NIL){
+            return NIL;
+        }
+        int c=Double.compare(value, values[node]);
+        if(c<0){
+            left[node]=this.delete(left[node], value);
+        }
+        else if(c>0){
+            right[node]=this.delete(right[node], value);
+        }
+        else{
+            removed=true;
+            if(counts[node]>1){
+                counts[node]--;
+            }
+            else{
+                return this.deleteNode(node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Rotates a node down until it is a leaf and removes it
+     */
+    private int deleteNode(int node){
+        if(left[node]==NIL){
+            int child=right[node];
+            this.releaseNode(node);
+            return child;
+        }
+        if(right[node]==NIL){
+            int child=left[node];
+            this.releaseNode(node);
+            return child;
+        }
+        int top;
+        if(priorities[left[node]]>priorities[right[node]]){
+            top=this.rotateRight(node);
+            right[top]=this.deleteNode(node);
+        }
+        else{
+            top=this.rotateLeft(node);
+            left[top]=this.deleteNode(node);
+        }
+        return top;
+    }
+
+    private int rotateRight(int node){
+        int top=left[node];
+        left[node]=right[top];
+        right[top]=node;
+        return top;
+    }
+
+    private int rotateLeft(int node){
+        int top=right[node];
+        right[node]=left[top];
+        left[top]=node;
+        return top;
+    }
+
+    private int createNode(double value){
+        int node;
+        if(free!=NIL){
+            node=free;
+            free=left[node];
+        }
+        else{
+            if(nodes==values.length){
+                this.grow();
+            }
+            node=nodes++;
+        }
+        seed^=seed<<13;
+        seed^=seed>>>17;
+        seed^=seed<<5;
+        values[node]=value;
+        counts[node]=1;
+        left[node]=NIL;
+        right[node]=NIL;
+        priorities[node]=seed;
+        return node;
+    }
+
+    /**
+     * Released nodes are linked in a free list through the left children
+     */
+    private void releaseNode(int node){
+        left[node]=free;
+        free=node;
+    }
+
+    private void grow(){
+        int capacity=values.length<<1;
+        values=copy(values, capacity);
+        counts=copy(counts, capacity);
+        left=copy(left, capacity);
+        right=copy(right, capacity);
+        priorities=copy(priorities, capacity);
+    }
+
+    private static double[] copy(double[] array, int capacity){
+        double[] copy=new double[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copy(int[] array, int capacity){
+        int[] copy=new int[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import consistency.MembershipDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Estimates the most frequent states by their identifiers with a count-min
+ * sketch and a bounded set of candidate states, as described in:
+ *
+ * G. Cormode, S. Muthukrishnan, An Improved Data Stream Summary: The
+ * Count-Min Sketch and its Applications, Journal of Algorithms 2005
+ *
+ * The sketch has d rows of w counters and a state increments one counter in
+ * every row, derived from its digest by double hashing as in the membership
+ * filters. The count of a state is estimated by the minimum of its counters,
+ * which never underestimates the count. Removals decrement the same counters,
+ * so that the sketch remains exact under any sequence of additions and
+ * removals of previously added states. The candidates are the states with the
+ * highest estimated counts when they were last added, they are replaced by
+ * more frequent states and they are dropped when their count becomes zero.
+ * The candidates are kept in a min-heap of their estimated counts, indexed by
+ * their digests in an open-addressing table, so that an addition or a removal
+ * takes O(log k) instead of a scan of the candidates. The memory depends only
+ * on w, d and the number of candidates.
+ *
+ * @author Evangelos
+ */
+public class HeavyHitters {
+
+    private final static int DEPTH=4;
+    private final static int CANDIDATES_PER_K=4;
+
+    private final int k;
+    private final int widthMask;
+    private final long[] counters;
+    // the candidates as a min-heap of their estimates
+    private final long[] digests;
+    private final UUID[] ids;
+    private final long[] estimates;
+    private int size;
+    // the heap position+1 of every candidate digest, 0 for an empty slot
+    private final long[] indexDigests;
+    private final int[] indexPositions;
+    private final int indexMask;
+
+    /**
+     * Initializes an empty structure
+     *
+     * @param k the positive number of the most frequent states
+     * @param width the positive number of counters in a row, rounded up to a
+     * power of two
+     */
+    public HeavyHitters(int k, int width){
+        if(k<=0 || width<=0){
+            throw new IllegalArgumentException("The number of the most frequent states and the width must be positive");
+        }
+        int rowWidth=Integer.highestOneBit(Math.max(1, width-1))<<1;
+        int candidates=k*CANDIDATES_PER_K;
+        int indexSize=Integer.highestOneBit(candidates)<<2;
+        this.k=k;
+        this.widthMask=rowWidth-1;
+        this.counters=new long[DEPTH*rowWidth];
+        this.digests=new long[candidates];
+        this.ids=new UUID[candidates];
+        this.estimates=new long[candidates];
+        this.size=0;
+        this.indexDigests=new long[indexSize];
+        this.indexPositions=new int[indexSize];
+        this.indexMask=indexSize-1;
+    }
+
+    public void add(long digest, UUID id){
+        long estimate=this.update(digest, 1);
+        int candidate=this.find(digest);
+        if(candidate>=0){
+            estimates[candidate]=estimate;
+            this.siftDown(candidate);
+            return;
+        }
+        if(size<digests.length){
+            candidate=size++;
+            this.set(candidate, digest, id, estimate);
+            this.index(digest, candidate);
+            this.siftUp(candidate);
+        }
+        else if(estimate>estimates[0]){
+            // the least frequent candidate is replaced
+            this.unindex(digests[0]);
+            this.set(0, digest, id, estimate);
+            this.index(digest, 0);
+            this.siftDown(0);
+        }
+    }
+
+    /**
+     * Removes a state that has been added before.
+     */
+    public void remove(long digest){
+        long estimate=this.update(digest, -1);
+        int candidate=this.find(digest);
+        if(candidate<0){
+            return;
+        }
+        if(estimate>0){
+            estimates[candidate]=estimate;
+            this.siftUp(candidate);
+        }
+        else{
+            this.unindex(digest);
+            size--;
+            if(candidate<size){
+                this.set(candidate, digests[size], ids[size], estimates[size]);
+                this.index(digests[candidate], candidate);
+                this.siftUp(candidate);
+                this.siftDown(candidate);
+            }
+            ids[size]=null;
+        }
+    }
+
+    public void clear(){
+        Arrays.fill(counters, 0);
+        Arrays.fill(ids, null);
+        Arrays.fill(indexPositions, 0);
+        size=0;
+    }
+
+    /**
+     * Provides the most frequent states with their estimated counts.
+     *
+     * @return at most k identifiers of states ordered by decreasing estimated
+     * count
+     */
+    public Map<UUID, Long> getTopK(){
+        Integer[] order=new Integer[size];
+        final long[] counts=new long[size];
+        for(int i=0; i<size; i++){
+            order[i]=i;
+            counts[i]=this.estimate(digests[i]);
+        }
+        Arrays.sort(order, new Comparator<Integer>(){
+            public int compare(Integer a, Integer b){
+                return counts[a]>counts[b] ? -1 : (counts[a]<counts[b] ? 1 : 0);
+            }
+        });
+        Map<UUID, Long> topK=new LinkedHashMap<UUID, Long>();
+        for(int i=0; i<Math.min(k, size); i++){
+            topK.put(ids[order[i]], counts[order[i]]);
+        }
+        return topK;
+    }
+
+    /**
+     * Estimates the count of a state
+     *
+     * @param digest the digest of the state
+     * @return the minimum of the counters of the state
+     */
+    public long estimate(long digest){
+        return this.update(digest, 0);
+    }
+
+    /**
+     * Adds a delta in the counters of a digest.
+     *
+     * @return the estimated count after the update
+     */
+    private long update(long digest, int delta){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        long estimate=Long.MAX_VALUE;
+        for(int i=0; i<DEPTH; i++){
+            int index=i*(widthMask+1)+((h1+i*h2)&widthMask);
+            counters[index]+=delta;
+            estimate=Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    private void set(int candidate, long digest, UUID id, long estimate){
+        digests[candidate]=digest;
+        ids[candidate]=id;
+        estimates[candidate]=estimate;
+    }
+
+    private void swap(int a, int b){
+        long digest=digests[a];
+        UUID id=ids[a];
+        long estimate=estimates[a];
+        this.set(a, digests[b], ids[b], estimates[b]);
+        this.set(b, digest, id, estimate);
+        this.index(digests[a], a);
+        this.index(digests[b], b);
+    }
+
+    private void siftUp(int candidate){
+        while(candidate>0){
+            int parent=(candidate-1)>>>1;
+            if(estimates[parent]<=estimates[candidate]){
+                return;
+            }
+            this.swap(candidate, parent);
+            candidate=parent;
+        }
+    }
+
+    private void siftDown(int candidate){
+        while(true){
+            int child=2*candidate+1;
+            if(child>=size){
+                return;
+            }
+            if(child+1<size && estimates[child+1]<estimates[child]){
+                child++;
+            }
+            if(estimates[candidate]<=estimates[child]){
+                return;
+            }
+            this.swap(candidate, child);
+            candidate=child;
+        }
+    }
+
+    /**
+     * @return the heap position of a candidate digest or -1
+     */
+    private int find(long digest){
+        for(int slot=this.slot(digest); indexPositions[slot]!=0; slot=(slot+1)&indexMask){
+            if(indexDigests[slot]==digest){
+                return indexPositions[slot]-1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Puts or updates the heap position of a candidate digest
+     */
+    private void index(long digest, int candidate){
+        int slot=this.slot(digest);
+        while(indexPositions[slot]!=0 && indexDigests[slot]!=digest){
+            slot=(slot+1)&indexMask;
+        }
+        indexDigests[slot]=digest;
+        indexPositions[slot]=candidate+1;
+    }
+
+    /**
+     * Removes a candidate digest from the index by shifting back the digests
+     * that follow it in the probe sequence.
+     */
+    private void unindex(long digest){
+        int slot=this.slot(digest);
+        while(indexDigests[slot]!=digest || indexPositions[slot]==0){
+            slot=(slot+1)&indexMask;
+        }
+        int next=(slot+1)&indexMask;
+        while(indexPositions[next]!=0){
+            int home=this.slot(indexDigests[next]);
+            // the digest can move back if its home is not within (slot, next]
+            if(((next-home)&indexMask)>=((next-slot)&indexMask)){
+                indexDigests[slot]=indexDigests[next];
+                indexPositions[slot]=indexPositions[next];
+                slot=next;
+            }
+            next=(next+1)&indexMask;
+        }
+        indexPositions[slot]=0;
+    }
+
+    private int slot(long digest){
+        return MembershipDigest.h2(digest)&indexMask;
+    }
+}
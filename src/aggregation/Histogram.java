@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import java.util.Arrays;
+
+/**
+ * A histogram with fixed buckets that counts values exactly. The bucket i
+ * counts the values in [edges[i], edges[i+1]), the last bucket also counts
+ * the last edge. Values below the first edge are counted in the first bucket
+ * and values above the last edge in the last bucket. A value is removed from
+ * the bucket it was added to, so additions and removals are exact.
+ *
+ * If the edges are equidistant up to rounding, the bucket of a value is computed in O(1),
+ * otherwise it is found by binary search over the edges.
+ *
+ * @author Evangelos
+ */
+public class Histogram {
+
+    private final double[] edges;
+    private final long[] counts;
+    private final boolean uniform;
+    private final double width;
+
+    /**
+     * Initializes an empty histogram
+     *
+     * @param edges the increasing edges of the buckets, at least two
+     */
+    public Histogram(double[] edges){
+        if(edges.length<2){
+            throw new IllegalArgumentException("A histogram needs at least two edges");
+        }
+        this.edges=edges.clone();
+        this.counts=new long[edges.length-1];
+        this.width=(edges[edges.length-1]-edges[0])/counts.length;
+        boolean equidistant=true;
+        for(int i=1; i<edges.length; i++){
+            if(!(edges[i]>edges[i-1])){
+                throw new IllegalArgumentException("The edges of a histogram must be increasing");
+            }
+            equidistant&=Math.abs(edges[0]+i*width-edges[i])<=1e-9*width;
+        }
+        this.uniform=equidistant;
+    }
+
+    /**
+     * Creates the edges of equidistant buckets
+     *
+     * @param min the first edge
+     * @param max the last edge
+     * @param buckets the number of buckets
+     * @return the edges of the buckets
+     */
+    public static double[] getUniformEdges(double min, double max, int buckets){
+        double[] edges=new double[buckets+1];
+        double width=(max-min)/buckets;
+        for(int i=0; i<buckets; i++){
+            edges[i]=min+i*width;
+        }
+        edges[buckets]=max;
+        return edges;
+    }
+
+    public void add(double value){
+        counts[this.getBucket(value)]++;
+    }
+
+    /**
+     * Removes a value that has been added before.
+     */
+    public void remove(double value){
+        counts[this.getBucket(value)]--;
+    }
+
+    /**
+     * Adds the counts of a histogram with the same edges in this histogram.
+     *
+     * @param histogram the merged histogram
+     */
+    public void merge(Histogram histogram){
+        if(!Arrays.equals(edges, histogram.edges)){
+            throw new IllegalArgumentException("Histograms with different edges cannot be merged");
+        }
+        for(int i=0; i<counts.length; i++){
+            counts[i]+=histogram.counts[i];
+        }
+    }
+
+    public void clear(){
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * @return a copy of the counts of the buckets
+     */
+    public long[] getCounts(){
+        return counts.clone();
+    }
+
+    /**
+     * @return a copy of the edges of the buckets
+     */
+    public double[] getEdges(){
+        return edges.clone();
+    }
+
+    private int getBucket(double value){
+        int bucket;
+        if(uniform){
+            bucket=(int)Math.floor((value-edges[0])/width);
+            // the division may round a value next to an edge in the wrong bucket
+            if(bucket>=0 && bucket<counts.length){
+                if(value<edges[bucket]){
+                    bucket--;
+                }
+                else if(value>=edges[bucket+1]){
+                    bucket++;
+                }
+            }
+        }
+        else{
+            bucket=Arrays.binarySearch(edges, value);
+            bucket=bucket>=0 ? bucket : -bucket-2;
+        }
+        return Math.max(0, Math.min(counts.length-1, bucket));
+    }
+}
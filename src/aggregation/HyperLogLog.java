@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog counter that estimates the number of distinct digests added
+ * to it with 2^p registers of one byte, as described in:
+ *
+ * P. Flajolet, E. Fusy, O. Gandouet, F. Meunier, HyperLogLog: the analysis of
+ * a near-optimal cardinality estimation algorithm, AofA 2007
+ *
+ * The first p bits of a digest select a register that keeps the maximum
+ * position of the first 1-bit in the rest of the digest. Adding a digest
+ * twice has no effect, which makes the counter insensitive to duplicates as
+ * the DIAS memberships. The sum of 2^-register and the number of empty
+ * registers are maintained on every addition, so that both addition and
+ * estimation are O(1). The standard error is 1.04/sqrt(2^p) and small
+ * cardinalities are estimated by linear counting. Digests cannot be removed.
+ *
+ * @author Evangelos
+ */
+public class HyperLogLog {
+
+    public final static int MIN_PRECISION=4;
+    public final static int MAX_PRECISION=16;
+
+    // 2^-rank for every rank of a register
+    private final static double[] INVERSE_POWERS=new double[66];
+
+    static{
+        INVERSE_POWERS[0]=1.0;
+        for(int i=1; i<INVERSE_POWERS.length; i++){
+            INVERSE_POWERS[i]=INVERSE_POWERS[i-1]/2.0;
+        }
+    }
+
+    private final int precision;
+    private final byte[] registers;
+    private double inverseSum;
+    private int zeros;
+
+    /**
+     * Initializes an empty counter
+     *
+     * @param precision the counter has 2^precision registers
+     */
+    public HyperLogLog(int precision){
+        this.precision=Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+        this.registers=new byte[1<<this.precision];
+        this.clear();
+    }
+
+    public void add(long digest){
+        int index=(int)(digest>>>(64-precision));
+        int rank=Long.numberOfLeadingZeros((digest<<precision)|(1L<<(precision-1)))+1;
+        this.update(index, rank);
+    }
+
+    /**
+     * Adds the digests of a counter with the same precision in this counter.
+     *
+     * @param counter the merged counter
+     */
+    public void merge(HyperLogLog counter){
+        if(counter.precision!=precision){
+            throw new IllegalArgumentException("Counters with different precision cannot be merged");
+        }
+        for(int i=0; i<registers.length; i++){
+            this.update(i, counter.registers[i]);
+        }
+    }
+
+    public void clear(){
+        Arrays.fill(registers, (byte)0);
+        inverseSum=registers.length;
+        zeros=registers.length;
+    }
+
+    /**
+     * @return the estimated number of distinct digests
+     */
+    public double getEstimate(){
+        double m=registers.length;
+        double estimate=this.getAlpha()*m*m/inverseSum;
+        if(estimate<=2.5*m && zeros>0){
+            return m*Math.log(m/zeros);
+        }
+        return estimate;
+    }
+
+    public int getPrecision(){
+        return precision;
+    }
+
+    private void update(int index, int rank){
+        int register=registers[index];
+        if(rank>register){
+            if(register==0){
+                zeros--;
+            }
+            inverseSum+=INVERSE_POWERS[rank]-INVERSE_POWERS[register];
+            registers[index]=(byte)rank;
+        }
+    }
+
+    private double getAlpha(){
+        switch(registers.length){
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213/(1.0+1.079/registers.length);
+        }
+    }
+}
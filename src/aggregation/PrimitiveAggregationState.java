@@ -0,0 +1,1483 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import consistency.MembershipDigest;
+import dsutil.protopeer.services.aggregation.AggregationType;
+import dsutil.protopeer.services.aggregation.AggregationFunction;
+import dsutil.generic.state.ArithmeticListState;
+import dsutil.generic.state.ArithmeticState;
+import dsutil.generic.state.State;
+import dsutil.generic.state.StateException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An aggregation state with the same aggregation functions and results as
+ * <code>AggregationState</code> that stores the aggregates in primitive
+ * fields instead of the properties of the state. The aggregates of an
+ * arithmetic state are double fields and the aggregates of an arithmetic list
+ * state are parallel double arrays, one element for every arithmetic state of
+ * the list. Arithmetic states are only created when the aggregates of a list
+ * are read.
+ *
+ * Additions and removals only update the SUM, SUM_SQR, MAX, MIN and COUNT. The
+ * AVG and STDEV are derived from SUM, SUM_SQR and COUNT when they are read and
+ * they are cached until the next addition or removal.
+ *
+ * With the EXACT_EXTREMES parameter, the added values are also kept in a
+ * multiset, one for every element of a list, and the removal of the MAX or MIN
+ * value restores the next MAX or MIN of the multiset instead of resetting it.
+ * The MAX and MIN of empty aggregates are then NaN.
+ *
+ * With the COMPENSATED parameter, the rounding error of every update of the
+ * SUM and SUM_SQR is accumulated in a compensation term (Neumaier's variant of
+ * Kahan summation) and the second central moment M2 is updated with the means
+ * before and after the update (Welford's algorithm, also in reverse for
+ * removals). The STDEV is then SQRT(M2/COUNT) instead of the difference of
+ * two large numbers, so it cannot become NaN. Additions and removals remain
+ * O(1) and aggregates that are emptied by removals are reset to zero.
+ *
+ * With the QUANTILE_ACCURACY parameter, the values of arithmetic states are
+ * also added to and removed from a <code>QuantileSketch</code> and the
+ * quantiles are provided by <code>getQuantile</code>.
+ *
+ * With the DISTINCT_PRECISION parameter, the digests of the values of the
+ * added states, or of the whole lists of values, are counted in a
+ * <code>HyperLogLog</code> counter. As the counter cannot remove digests,
+ * <code>getDistinctCount</code> estimates the distinct values added since the
+ * aggregates were initialized, i.e. within an aggregation epoch, including the
+ * values of removed states. The counter can be rebuilt from the states that
+ * are still aggregated with <code>clearDistinctCount</code> and
+ * <code>addDistinctCount</code>.
+ *
+ * With the HISTOGRAM_EDGES parameter, the values of arithmetic states are
+ * also added to and removed from a <code>Histogram</code> with these edges
+ * and the counts of the buckets are provided by <code>getHistogram</code>.
+ *
+ * With the TOP_K parameter, the identifiers of the added and removed states
+ * are also counted in <code>HeavyHitters</code> and the most frequently
+ * aggregated states are provided by <code>getTopK</code>.
+ *
+ * Sparse list states are aggregated as arithmetic list states in which the
+ * values that are not stored are zero. Only the aggregates of the non-zero
+ * values are updated, while the COUNT of all elements is a single counter
+ * and the number of non-zero values of every element decides whether zero is
+ * the MAX or MIN. These aggregates are derived for all the elements when they
+ * are read. Aggregates of sparse list states do not accept arithmetic list
+ * states and vice versa. In the compensated mode, the STDEV of sparse list
+ * states is derived from the compensated SUM and SUM_SQR, as the second
+ * central moment would change in every element with every added state.
+ *
+ * States can also be added and removed with a weight, which multiplies the
+ * value in the SUM and SUM_SQR and is counted in the COUNT instead of one, so
+ * that the AVG and STDEV are the weighted mean and standard deviation. The
+ * MAX and MIN and the values in the sketches are not weighted. A state that is
+ * added without a weight has a weight of one.
+ *
+ * The supported aggregation functions are the following:
+ *
+ * SUM, MAX, MIN, AVG, STDEV, COUNT, SUM_SQR
+ *
+ * As in <code>AggregationState</code>, an uninitialized aggregate of an
+ * arithmetic state is NaN and the removal of the MAX or MIN state resets the
+ * MAX to Double.MIN_VALUE and the MIN to Double.MAX_VALUE, which can be
+ * updated by previously added states.
+ *
+ * @author Evangelos
+ */
+public class PrimitiveAggregationState extends State{
+
+    private static final long serialVersionUID=1L;
+
+    private final static int INITIAL_CAPACITY=16;
+    private final static int QUANTILE_BINS=1024;
+    private final static int TOP_K_WIDTH=1024;
+
+    private AggregationType aggregationType;
+
+    // aggregates of arithmetic states
+    private double sum;
+    private double sumSquare;
+    private double max;
+    private double min;
+    private double avg;
+    private double stdev;
+    private double count;
+
+    // aggregates of arithmetic list states
+    private int size;
+    private double[] sums;
+    private double[] sumSquares;
+    private double[] maxs;
+    private double[] mins;
+    private double[] avgs;
+    private double[] stdevs;
+    private double[] counts;
+
+    // aggregates of sparse list states
+    private boolean sparse;
+    private int sparseStates;
+    private double sparseCount;
+    private int[] nonZeros;
+    private double[] nonZeroMaxs;
+    private double[] nonZeroMins;
+
+    // the values of the added or removed arithmetic list state
+    private double[] buffer;
+
+    // AVG and STDEV need to be derived again
+    private boolean dirty;
+
+    // the number of changes of the aggregates
+    private long version;
+
+    // the added values in the exact extremes mode, otherwise null
+    private final boolean exactExtremes;
+    private DoubleMultiset values;
+    private DoubleMultiset[] listValues;
+
+    // compensation terms and second central moments in the compensated mode
+    private final boolean compensated;
+    private double sumError;
+    private double sumSquareError;
+    private double m2;
+    private double[] sumErrors;
+    private double[] sumSquareErrors;
+    private double[] m2s;
+
+    // the quantile sketch of arithmetic states, otherwise null
+    private final QuantileSketch quantiles;
+
+    // the distinct values counter, otherwise null
+    private final HyperLogLog distinct;
+
+    // the histogram of arithmetic states, otherwise null
+    private final Histogram histogram;
+
+    // the most frequent states, otherwise null
+    private final HeavyHitters heavyHitters;
+
+    /**
+     * Initializes an aggregation state by providing the aggregation type. In
+     * case of a <code>Type</code> about an <code>ArithmeticState</code> the
+     * aggregates are initialized with NaN. In the case of an
+     * <code>ArithmeticListState</code> the aggregates are empty.
+     *
+     * @param selectedType the selected type of the aggregation state
+     */
+    public PrimitiveAggregationState(AggregationType selectedType){
+        this(selectedType, new HashMap<AggregationParams, Object>());
+    }
+
+    /**
+     * Initializes an aggregation state by providing the aggregation type and
+     * the optional parameters of the aggregation state.
+     *
+     * @param selectedType the selected type of the aggregation state
+     * @param parameters the parameters of the aggregation state
+     */
+    public PrimitiveAggregationState(AggregationType selectedType, Map<AggregationParams, Object> parameters){
+        super();
+        this.exactExtremes=Boolean.TRUE.equals(parameters.get(AggregationParams.EXACT_EXTREMES));
+        this.compensated=Boolean.TRUE.equals(parameters.get(AggregationParams.COMPENSATED));
+        Double accuracy=(Double)parameters.get(AggregationParams.QUANTILE_ACCURACY);
+        Integer bins=(Integer)parameters.get(AggregationParams.QUANTILE_BINS);
+        if(accuracy!=null){
+            this.quantiles=new QuantileSketch(accuracy, bins==null ? QUANTILE_BINS : bins);
+        }
+        else{
+            this.quantiles=null;
+        }
+        Integer precision=(Integer)parameters.get(AggregationParams.DISTINCT_PRECISION);
+        this.distinct=precision==null ? null : new HyperLogLog(precision);
+        double[] edges=(double[])parameters.get(AggregationParams.HISTOGRAM_EDGES);
+        this.histogram=edges==null ? null : new Histogram(edges);
+        Integer k=(Integer)parameters.get(AggregationParams.TOP_K);
+        Integer width=(Integer)parameters.get(AggregationParams.TOP_K_WIDTH);
+        this.heavyHitters=k==null ? null : new HeavyHitters(k, width==null ? TOP_K_WIDTH : width);
+        this.initAggregates(selectedType);
+    }
+
+    /**
+     * Initializes an aggregation state with a given state, arithmetic or
+     * arithmetic list.
+     *
+     * @param state a state for initialization.
+     */
+    public PrimitiveAggregationState(State state){
+        super();
+        this.exactExtremes=false;
+        this.compensated=false;
+        this.quantiles=null;
+        this.distinct=null;
+        this.histogram=null;
+        this.heavyHitters=null;
+        try{
+            if(state instanceof ArithmeticState){
+                this.initAggregates(AggregationType.ARITHMETIC);
+            }
+            else{
+                this.initAggregates(AggregationType.ARITHMETIC_LIST);
+            }
+            this.addState(state);
+        }
+        catch(StateException ex){
+            System.out.println(ex.toString()+ex.getStateExcMsg());
+        }
+    }
+
+    /**
+     * Adds a state in the aggregates. The supported types of states are (i) the
+     * arithmetic, (ii) the arithmetic list and (iii) the sparse list. The states
+     * must have been initialized (contains a value in arithmetic states or a
+     * non-empty list in arithmetic list states).
+     *
+     * @param state an added state
+     */
+    public void addState(State state) throws StateException{
+        this.addState(state, 1.0);
+    }
+
+    /**
+     * Adds a weighted state in the aggregates. The SUM and SUM_SQR add the
+     * weighted value and the weighted square value and the COUNT adds the
+     * weight, so that AVG and STDEV become the weighted mean and standard
+     * deviation. The MAX and MIN are not weighted.
+     *
+     * @param state an added state
+     * @param weight the positive weight of the state
+     */
+    public void addState(State state, double weight) throws StateException{
+        if(!(weight>0.0)){
+            throw new StateException("State added with a weight that is not positive", state);
+        }
+        version++;
+        if(state instanceof ArithmeticState && aggregationType.equals(AggregationType.ARITHMETIC)){
+            ArithmeticState addState=(ArithmeticState)state;
+            if(addState.containsValue()){
+                this.addArithmeticState(addState.getValue(), weight);
+            }
+            else{
+                throw new StateException("Arithmetic state added does not contain a value", state);
+            }
+        }
+        else{
+            if(state instanceof ArithmeticListState && aggregationType.equals(AggregationType.ARITHMETIC_LIST)){
+                ArithmeticListState addState=(ArithmeticListState)state;
+                if(addState.containsArithmeticList()){
+                    this.addArithmeticListState(addState, weight);
+                }
+                else{
+                    throw new StateException("Arithmetic list state added does not contain arithmetic states", state);
+                }
+            }
+            else if(state instanceof SparseListState && aggregationType.equals(AggregationType.ARITHMETIC_LIST)){
+                this.addSparseListState((SparseListState)state, weight);
+            }
+            else{
+                throw new StateException("Invalid state type", state);
+            }
+        }
+        if(heavyHitters!=null){
+            heavyHitters.add(MembershipDigest.digest(state), state.getStateId());
+        }
+    }
+
+    /**
+     * Adds a new arithmetic value by updating the aggregates. The AVERAGE and
+     * the STDEV are derived when they are read.
+     *
+     * @param value the added value
+     * @param weight the weight of the value, 1.0 if it is not weighted
+     */
+    private void addArithmeticState(double value, double weight){
+        if(quantiles!=null){
+            quantiles.add(value);
+        }
+        if(distinct!=null){
+            distinct.add(MembershipDigest.digest(value));
+        }
+        if(histogram!=null){
+            histogram.add(value);
+        }
+        if(compensated){
+            this.addCompensated(value, weight);
+            return;
+        }
+        double weighted=value*weight;
+        double square=weighted*value;
+        sum=Double.isNaN(sum) ? weighted : sum+weighted;
+        sumSquare=Double.isNaN(sumSquare) ? square : sumSquare+square;
+        max=Double.isNaN(max) ? value : Math.max(max, value);
+        min=Double.isNaN(min) ? value : Math.min(min, value);
+        count=Double.isNaN(count) ? weight : count+weight;
+        dirty=true;
+        if(exactExtremes){
+            values.add(value);
+        }
+    }
+
+    /**
+     * Adds a new arithmetic value in the compensated mode.
+     *
+     * @param value the added value
+     * @param weight the weight of the value
+     */
+    private void addCompensated(double value, double weight){
+        double weighted=value*weight;
+        double square=weighted*value;
+        if(Double.isNaN(count) || count<=0.0){
+            sum=weighted;
+            sumSquare=square;
+            max=value;
+            min=value;
+            count=weight;
+            sumError=0.0;
+            sumSquareError=0.0;
+            m2=0.0;
+        }
+        else{
+            double mean=(sum+sumError)/count;
+            double total=sum+weighted;
+            sumError+=error(sum, weighted, total);
+            sum=total;
+            total=sumSquare+square;
+            sumSquareError+=error(sumSquare, square, total);
+            sumSquare=total;
+            max=Math.max(max, value);
+            min=Math.min(min, value);
+            count+=weight;
+            m2+=weight*(value-mean)*(value-(sum+sumError)/count);
+        }
+        dirty=true;
+        if(exactExtremes){
+            values.add(value);
+        }
+    }
+
+    /**
+     * Adds a new arithmetic list state by copying its values in a buffer that
+     * is reused and then updating the aggregates over the primitive arrays.
+     *
+     * @param addState the added arithmetic list state
+     * @param weight the weight of the list state
+     */
+    private void addArithmeticListState(ArithmeticListState addState, double weight) throws StateException{
+        if(sparse){
+            throw new StateException("Arithmetic list state added in aggregates of sparse list states", addState);
+        }
+        int length=this.copyValues(addState);
+        if(size>0 && length>size){
+            throw new StateException("Arithmetic list state added has more arithmetic states than the aggregates", addState);
+        }
+        this.addListValues(buffer, length, weight);
+    }
+
+    /**
+     * Adds the values of an arithmetic list as a primitive array, without
+     * creating an arithmetic list state. The element i of the array is
+     * aggregated with the element i of the previously added lists.
+     *
+     * @param values the added values
+     */
+    public void addValues(double[] values) throws StateException{
+        if(aggregationType!=AggregationType.ARITHMETIC_LIST || sparse){
+            throw new StateException("Values added in aggregates that are not of arithmetic list states");
+        }
+        if(size>0 && values.length>size){
+            throw new StateException("Values added are more than the aggregates");
+        }
+        version++;
+        this.addListValues(values, values.length, 1.0);
+    }
+
+    /**
+     * Updates the aggregates of every element with a list of values. The first
+     * added list initializes the aggregates. Otherwise SUM, SUM_SQR, MAX, MIN
+     * and COUNT are updated in a single pass without branches over parallel
+     * arrays, a loop that the JIT compiler can vectorize. Weighted values are
+     * updated in a separate loop.
+     *
+     * @param values the added values
+     * @param length the number of values
+     * @param weight the weight of the values, 1.0 if they are not weighted
+     */
+    private void addListValues(double[] values, int length, double weight){
+        dirty=true;
+        if(distinct!=null){
+            distinct.add(MembershipDigest.digest(values, length));
+        }
+        if(size==0){
+            this.ensureCapacity(length);
+            for(int i=0; i<length; i++){
+                double value=values[i];
+                double weighted=value*weight;
+                sums[i]=weighted;
+                sumSquares[i]=weighted*value;
+                maxs[i]=value;
+                mins[i]=value;
+                counts[i]=weight;
+                if(compensated){
+                    sumErrors[i]=0.0;
+                    sumSquareErrors[i]=0.0;
+                    m2s[i]=0.0;
+                }
+                if(exactExtremes){
+                    listValues[i].add(value);
+                }
+            }
+            size=length;
+            return;
+        }
+        if(compensated){
+            for(int i=0; i<length; i++){
+                this.addCompensated(i, values[i], weight);
+            }
+            return;
+        }
+        double[] sums=this.sums;
+        double[] sumSquares=this.sumSquares;
+        double[] maxs=this.maxs;
+        double[] mins=this.mins;
+        double[] counts=this.counts;
+        if(weight==1.0){
+            for(int i=0; i<length; i++){
+                double value=values[i];
+                sums[i]+=value;
+                sumSquares[i]+=value*value;
+                maxs[i]=Math.max(value, maxs[i]);
+                mins[i]=Math.min(value, mins[i]);
+                counts[i]+=1.0;
+            }
+        }
+        else{
+            for(int i=0; i<length; i++){
+                double value=values[i];
+                double weighted=value*weight;
+                sums[i]+=weighted;
+                sumSquares[i]+=weighted*value;
+                maxs[i]=Math.max(value, maxs[i]);
+                mins[i]=Math.min(value, mins[i]);
+                counts[i]+=weight;
+            }
+        }
+        if(exactExtremes){
+            for(int i=0; i<length; i++){
+                listValues[i].add(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Copies the values of an arithmetic list state in the buffer.
+     *
+     * @param state the arithmetic list state
+     * @return the number of copied values
+     */
+    private int copyValues(ArithmeticListState state){
+        List<ArithmeticState> states=state.getArithmeticStates();
+        int length=states.size();
+        if(buffer==null || buffer.length<length){
+            buffer=new double[Math.max(length, INITIAL_CAPACITY)];
+        }
+        for(int i=0; i<length; i++){
+            buffer[i]=states.get(i).getValue();
+        }
+        return length;
+    }
+
+    /**
+     * Adds a value to an element of the list aggregates in the compensated
+     * mode.
+     *
+     * @param i the element of the list aggregates
+     * @param value the added value
+     * @param weight the weight of the value
+     */
+    private void addCompensated(int i, double value, double weight){
+        double weighted=value*weight;
+        double square=weighted*value;
+        if(counts[i]<=0.0){
+            sums[i]=weighted;
+            sumSquares[i]=square;
+            maxs[i]=value;
+            mins[i]=value;
+            counts[i]=weight;
+            sumErrors[i]=0.0;
+            sumSquareErrors[i]=0.0;
+            m2s[i]=0.0;
+            if(exactExtremes){
+                listValues[i].add(value);
+            }
+            return;
+        }
+        double mean=(sums[i]+sumErrors[i])/counts[i];
+        double total=sums[i]+weighted;
+        sumErrors[i]+=error(sums[i], weighted, total);
+        sums[i]=total;
+        total=sumSquares[i]+square;
+        sumSquareErrors[i]+=error(sumSquares[i], square, total);
+        sumSquares[i]=total;
+        maxs[i]=Math.max(value, maxs[i]);
+        mins[i]=Math.min(value, mins[i]);
+        counts[i]+=weight;
+        m2s[i]+=weight*(value-mean)*(value-(sums[i]+sumErrors[i])/counts[i]);
+        if(exactExtremes){
+            listValues[i].add(value);
+        }
+    }
+
+    /**
+     * Removes a state in the aggregates. The supported types of states are (i) the
+     * arithmetic, (ii) the arithmetic list and (iii) the sparse list. The states
+     * must have been initialized (contains a value in arithmetic states or a
+     * non-empty list in arithmetic list states).
+     *
+     * @param state a removed state
+     */
+    public void removeState(State state) throws StateException{
+        this.removeState(state, 1.0);
+    }
+
+    /**
+     * Removes a weighted state from the aggregates. The weight should be the
+     * one with which the state was added.
+     *
+     * @param state a removed state
+     * @param weight the positive weight of the state
+     */
+    public void removeState(State state, double weight) throws StateException{
+        if(!(weight>0.0)){
+            throw new StateException("State removed with a weight that is not positive", state);
+        }
+        version++;
+        if(state instanceof ArithmeticState && aggregationType.equals(AggregationType.ARITHMETIC)){
+            ArithmeticState removeState=(ArithmeticState)state;
+            if(removeState.containsValue()){
+                this.removeArithmeticState(removeState.getValue(), weight);
+            }
+            else{
+                throw new StateException("Arithmetic state removed does not contain a value", state);
+            }
+        }
+        else{
+            if(state instanceof ArithmeticListState && aggregationType.equals(AggregationType.ARITHMETIC_LIST)){
+                ArithmeticListState removeState=(ArithmeticListState)state;
+                if(removeState.containsArithmeticList()){
+                    this.removeArithmeticListState(removeState, weight);
+                }
+                else{
+                    throw new StateException("Arithmetic list state removed does not contain arithmetic states", state);
+                }
+            }
+            else if(state instanceof SparseListState && aggregationType.equals(AggregationType.ARITHMETIC_LIST)){
+                this.removeSparseListState((SparseListState)state, weight);
+            }
+            else{
+                throw new StateException("Invalid state", state);
+            }
+        }
+        if(heavyHitters!=null){
+            heavyHitters.remove(MembershipDigest.digest(state));
+        }
+    }
+
+    /**
+     * Removes an arithmetic value by updating the aggregates. The removal
+     * assumes that the removed value does exist in the aggregates.
+     *
+     * @param value the removed value
+     * @param weight the weight of the value when it was added
+     */
+    private void removeArithmeticState(double value, double weight){
+        if(quantiles!=null){
+            quantiles.remove(value);
+        }
+        if(histogram!=null){
+            histogram.remove(value);
+        }
+        if(compensated){
+            this.removeCompensated(value, weight);
+        }
+        else{
+            double weighted=value*weight;
+            sum=sum-weighted;
+            sumSquare=sumSquare-weighted*value;
+        }
+        if(exactExtremes){
+            values.remove(value);
+            if(max==value){
+                max=values.max();
+            }
+            if(min==value){
+                min=values.min();
+            }
+        }
+        else{
+            if(max==value){
+                max=Double.MIN_VALUE;
+            }
+            if(min==value){
+                min=Double.MAX_VALUE;
+            }
+        }
+        count=count-weight;
+        dirty=true;
+    }
+
+    /**
+     * Removes an arithmetic value from the SUM, SUM_SQR and M2 in the
+     * compensated mode. The COUNT is updated by the caller.
+     *
+     * @param value the removed value
+     * @param weight the weight of the value
+     */
+    private void removeCompensated(double value, double weight){
+        if(count<=weight){
+            sum=0.0;
+            sumSquare=0.0;
+            sumError=0.0;
+            sumSquareError=0.0;
+            m2=0.0;
+            return;
+        }
+        double weighted=value*weight;
+        double square=weighted*value;
+        double mean=(sum+sumError)/count;
+        double total=sum-weighted;
+        sumError+=error(sum, -weighted, total);
+        sum=total;
+        total=sumSquare-square;
+        sumSquareError+=error(sumSquare, -square, total);
+        sumSquare=total;
+        m2=Math.max(0.0, m2-weight*(value-mean)*(value-(sum+sumError)/(count-weight)));
+    }
+
+    /**
+     * Removes an arithmetic list state by copying its values in the buffer and
+     * then updating the aggregates over the primitive arrays. The removal
+     * assumes that the removed state does exist in the aggregates.
+     *
+     * @param removeState the removed arithmetic list state
+     * @param weight the weight of the list state when it was added
+     */
+    private void removeArithmeticListState(ArithmeticListState removeState, double weight) throws StateException{
+        if(sparse){
+            throw new StateException("Arithmetic list state removed from aggregates of sparse list states", removeState);
+        }
+        int length=this.copyValues(removeState);
+        if(length>size){
+            throw new StateException("Arithmetic list state removed has more arithmetic states than the aggregates", removeState);
+        }
+        this.removeListValues(buffer, length, weight);
+    }
+
+    /**
+     * Removes the values of an arithmetic list given as a primitive array. The
+     * removal assumes that the removed values have been added.
+     *
+     * @param values the removed values
+     */
+    public void removeValues(double[] values) throws StateException{
+        if(aggregationType!=AggregationType.ARITHMETIC_LIST || sparse){
+            throw new StateException("Values removed from aggregates that are not of arithmetic list states");
+        }
+        if(values.length>size){
+            throw new StateException("Values removed are more than the aggregates");
+        }
+        version++;
+        this.removeListValues(values, values.length, 1.0);
+    }
+
+    /**
+     * Updates the aggregates of every element by removing a list of values
+     * in a single pass. The MAX and MIN are reset if they are removed.
+     *
+     * @param values the removed values
+     * @param length the number of values
+     * @param weight the weight of the values when they were added
+     */
+    private void removeListValues(double[] values, int length, double weight){
+        dirty=true;
+        for(int i=0; i<length; i++){
+            double value=values[i];
+            if(compensated){
+                this.removeCompensated(i, value, weight);
+            }
+            else{
+                double weighted=value*weight;
+                sums[i]-=weighted;
+                sumSquares[i]-=weighted*value;
+            }
+            if(exactExtremes){
+                listValues[i].remove(value);
+                if(value==maxs[i]){
+                    maxs[i]=listValues[i].max();
+                }
+                if(value==mins[i]){
+                    mins[i]=listValues[i].min();
+                }
+            }
+            else{
+                if(value==maxs[i]){
+                    maxs[i]=Double.MIN_VALUE;
+                }
+                if(value==mins[i]){
+                    mins[i]=Double.MAX_VALUE;
+                }
+            }
+            counts[i]-=weight;
+        }
+    }
+
+    /**
+     * Removes a value from the SUM, SUM_SQR and M2 of an element of the list
+     * aggregates in the compensated mode. The COUNT is updated by the caller.
+     *
+     * @param i the element of the list aggregates
+     * @param value the removed value
+     * @param weight the weight of the value when it was added
+     */
+    private void removeCompensated(int i, double value, double weight){
+        if(counts[i]<=weight){
+            sums[i]=0.0;
+            sumSquares[i]=0.0;
+            sumErrors[i]=0.0;
+            sumSquareErrors[i]=0.0;
+            m2s[i]=0.0;
+            return;
+        }
+        double weighted=value*weight;
+        double square=weighted*value;
+        double mean=(sums[i]+sumErrors[i])/counts[i];
+        double total=sums[i]-weighted;
+        sumErrors[i]+=error(sums[i], -weighted, total);
+        sums[i]=total;
+        total=sumSquares[i]-square;
+        sumSquareErrors[i]+=error(sumSquares[i], -square, total);
+        sumSquares[i]=total;
+        m2s[i]=Math.max(0.0, m2s[i]-weight*(value-mean)*(value-(sums[i]+sumErrors[i])/(counts[i]-weight)));
+    }
+
+    /**
+     * Adds a sparse list state by updating only the aggregates of its non-zero
+     * values. The first added sparse list state initializes the aggregates of
+     * all its dimensions with zeros.
+     *
+     * @param addState the added sparse list state
+     * @param weight the weight of the sparse list state
+     */
+    private void addSparseListState(SparseListState addState, double weight) throws StateException{
+        int dimensions=addState.getDimensions();
+        if(size==0){
+            this.initSparseAggregates(dimensions);
+        }
+        else if(!sparse){
+            throw new StateException("Sparse list state added in aggregates of arithmetic list states", addState);
+        }
+        else if(dimensions>size){
+            throw new StateException("Sparse list state added has more dimensions than the aggregates", addState);
+        }
+        int[] indices=addState.indices();
+        double[] values=addState.values();
+        dirty=true;
+        if(distinct!=null){
+            distinct.add(MembershipDigest.digest(dimensions, indices, values));
+        }
+        for(int k=0; k<indices.length; k++){
+            int i=indices[k];
+            double value=values[k];
+            double weighted=value*weight;
+            if(compensated){
+                this.addSparseCompensated(i, weighted, weighted*value);
+            }
+            else{
+                sums[i]+=weighted;
+                sumSquares[i]+=weighted*value;
+            }
+            if(nonZeros[i]==0){
+                nonZeroMaxs[i]=value;
+                nonZeroMins[i]=value;
+            }
+            else{
+                nonZeroMaxs[i]=Math.max(value, nonZeroMaxs[i]);
+                nonZeroMins[i]=Math.min(value, nonZeroMins[i]);
+            }
+            nonZeros[i]++;
+            if(exactExtremes){
+                listValues[i].add(value);
+            }
+        }
+        sparseStates++;
+        sparseCount+=weight;
+    }
+
+    /**
+     * Removes a sparse list state by updating only the aggregates of its
+     * non-zero values. The SUM and SUM_SQR of an element are reset to zero
+     * when none of its non-zero values remains. The removal assumes that the
+     * removed state does exist in the aggregates.
+     *
+     * @param removeState the removed sparse list state
+     * @param weight the weight of the sparse list state when it was added
+     */
+    private void removeSparseListState(SparseListState removeState, double weight) throws StateException{
+        if(!sparse){
+            throw new StateException("Sparse list state removed from aggregates of arithmetic list states", removeState);
+        }
+        if(removeState.getDimensions()>size){
+            throw new StateException("Sparse list state removed has more dimensions than the aggregates", removeState);
+        }
+        int[] indices=removeState.indices();
+        double[] values=removeState.values();
+        dirty=true;
+        for(int k=0; k<indices.length; k++){
+            int i=indices[k];
+            double value=values[k];
+            double weighted=value*weight;
+            nonZeros[i]--;
+            if(nonZeros[i]==0){
+                sums[i]=0.0;
+                sumSquares[i]=0.0;
+                if(compensated){
+                    sumErrors[i]=0.0;
+                    sumSquareErrors[i]=0.0;
+                }
+            }
+            else if(compensated){
+                this.addSparseCompensated(i, -weighted, -weighted*value);
+            }
+            else{
+                sums[i]-=weighted;
+                sumSquares[i]-=weighted*value;
+            }
+            if(exactExtremes){
+                listValues[i].remove(value);
+                if(value==nonZeroMaxs[i]){
+                    nonZeroMaxs[i]=listValues[i].max();
+                }
+                if(value==nonZeroMins[i]){
+                    nonZeroMins[i]=listValues[i].min();
+                }
+            }
+            else{
+                if(value==nonZeroMaxs[i]){
+                    nonZeroMaxs[i]=Double.MIN_VALUE;
+                }
+                if(value==nonZeroMins[i]){
+                    nonZeroMins[i]=Double.MAX_VALUE;
+                }
+            }
+        }
+        sparseStates--;
+        sparseCount-=weight;
+    }
+
+    /**
+     * Adds a weighted value and its square to the SUM and SUM_SQR of an
+     * element of the sparse list aggregates in the compensated mode.
+     *
+     * @param i the element of the list aggregates
+     * @param weighted the weighted value, negative for a removal
+     * @param square the weighted square value, negative for a removal
+     */
+    private void addSparseCompensated(int i, double weighted, double square){
+        double total=sums[i]+weighted;
+        sumErrors[i]+=error(sums[i], weighted, total);
+        sums[i]=total;
+        total=sumSquares[i]+square;
+        sumSquareErrors[i]+=error(sumSquares[i], square, total);
+        sumSquares[i]=total;
+    }
+
+    /**
+     * Initializes the aggregates of sparse list states with zeros.
+     *
+     * @param dimensions the number of elements of the aggregates
+     */
+    private void initSparseAggregates(int dimensions){
+        this.ensureCapacity(dimensions);
+        if(nonZeros==null || nonZeros.length<sums.length){
+            nonZeros=new int[sums.length];
+            nonZeroMaxs=new double[sums.length];
+            nonZeroMins=new double[sums.length];
+        }
+        for(int i=0; i<dimensions; i++){
+            sums[i]=0.0;
+            sumSquares[i]=0.0;
+            nonZeros[i]=0;
+            if(compensated){
+                sumErrors[i]=0.0;
+                sumSquareErrors[i]=0.0;
+            }
+        }
+        sparse=true;
+        size=dimensions;
+    }
+
+    /**
+     * The rounding error of the floating point addition a+b=total, which is
+     * exact if the larger operand is the first one (Neumaier).
+     *
+     * @return the part of a+b that is lost in the total
+     */
+    private static double error(double a, double b, double total){
+        if(Math.abs(a)>=Math.abs(b)){
+            return (a-total)+b;
+        }
+        return (b-total)+a;
+    }
+
+    /**
+     * Updates the MAX and MIN aggregation functions with a state that is
+     * already contained in the other aggregates, e.g. after the removal of the
+     * MAX or MIN state.
+     *
+     * @param state a state that updates the MAX and MIN aggregation functions
+     */
+    public void updateMaxMin(State state) throws StateException{
+        if(state instanceof ArithmeticState && aggregationType.equals(AggregationType.ARITHMETIC)){
+            ArithmeticState updateState=(ArithmeticState)state;
+            if(updateState.containsValue()){
+                double value=updateState.getValue();
+                if(value>max || value<min){
+                    version++;
+                }
+                max=Math.max(max, value);
+                min=Math.min(min, value);
+            }
+            else{
+                throw new StateException("Arithmetic state does not contain a value", state);
+            }
+        }
+        else{
+            if(state instanceof ArithmeticListState && aggregationType.equals(AggregationType.ARITHMETIC_LIST)){
+                ArithmeticListState updateState=(ArithmeticListState)state;
+                if(updateState.containsArithmeticList()){
+                    List<ArithmeticState> states=updateState.getArithmeticStates();
+                    int length=Math.min(states.size(), size);
+                    for(int i=0; i<length; i++){
+                        double value=states.get(i).getValue();
+                        if(value>maxs[i] || value<mins[i]){
+                            version++;
+                        }
+                        maxs[i]=Math.max(value, maxs[i]);
+                        mins[i]=Math.min(value, mins[i]);
+                    }
+                }
+                else{
+                    throw new StateException("Arithmetic list state does not contain arithmetic states", state);
+                }
+            }
+            else if(state instanceof SparseListState && sparse){
+                SparseListState updateState=(SparseListState)state;
+                int[] indices=updateState.indices();
+                double[] values=updateState.values();
+                for(int k=0; k<indices.length && indices[k]<size; k++){
+                    int i=indices[k];
+                    if(nonZeros[i]>0){
+                        if(values[k]>nonZeroMaxs[i] || values[k]<nonZeroMins[i]){
+                            version++;
+                        }
+                        nonZeroMaxs[i]=Math.max(values[k], nonZeroMaxs[i]);
+                        nonZeroMins[i]=Math.min(values[k], nonZeroMins[i]);
+                    }
+                }
+                dirty=true;
+            }
+            else{
+                throw new StateException("Invalid state", state);
+            }
+        }
+    }
+
+    /**
+     * Initializes aggregates with NaN values in the case of an arithmetic state
+     * or with empty arrays in the case of an arithmetic list state.
+     *
+     * @param selectedType the type of the aggregates that will be stored
+     */
+    private void initAggregates(AggregationType selectedType){
+        this.version++;
+        this.aggregationType=selectedType;
+        this.sum=Double.NaN;
+        this.sumSquare=Double.NaN;
+        this.max=Double.NaN;
+        this.min=Double.NaN;
+        this.avg=Double.NaN;
+        this.stdev=Double.NaN;
+        this.count=Double.NaN;
+        this.size=0;
+        this.sparse=false;
+        this.sparseStates=0;
+        this.sparseCount=0.0;
+        this.dirty=false;
+        this.sumError=0.0;
+        this.sumSquareError=0.0;
+        this.m2=0.0;
+        if(quantiles!=null){
+            quantiles.clear();
+        }
+        if(distinct!=null){
+            distinct.clear();
+        }
+        if(histogram!=null){
+            histogram.clear();
+        }
+        if(heavyHitters!=null){
+            heavyHitters.clear();
+        }
+        if(this.sums==null && selectedType==AggregationType.ARITHMETIC_LIST){
+            this.ensureCapacity(INITIAL_CAPACITY);
+        }
+        if(exactExtremes){
+            if(values==null){
+                values=new DoubleMultiset();
+            }
+            values.clear();
+            for(int i=0; listValues!=null && i<listValues.length; i++){
+                listValues[i].clear();
+            }
+        }
+    }
+
+    /**
+     * Grows the arrays of the list aggregates to hold a number of elements.
+     *
+     * @param capacity the number of elements
+     */
+    private void ensureCapacity(int capacity){
+        if(sums!=null && sums.length>=capacity){
+            return;
+        }
+        sums=new double[capacity];
+        sumSquares=new double[capacity];
+        maxs=new double[capacity];
+        mins=new double[capacity];
+        avgs=new double[capacity];
+        stdevs=new double[capacity];
+        counts=new double[capacity];
+        if(compensated){
+            sumErrors=new double[capacity];
+            sumSquareErrors=new double[capacity];
+            m2s=new double[capacity];
+        }
+        if(exactExtremes){
+            DoubleMultiset[] grown=new DoubleMultiset[capacity];
+            int i=0;
+            for(; listValues!=null && i<listValues.length; i++){
+                grown[i]=listValues[i];
+            }
+            for(; i<capacity; i++){
+                grown[i]=new DoubleMultiset();
+            }
+            listValues=grown;
+        }
+    }
+
+    /**
+     * Derives the AVG and STDEV from the SUM, SUM_SQR and COUNT if they have
+     * changed since they were last derived.
+     *
+     * STDEV - SQRT(E[X^2]-E[X]^2)
+     *
+     * In the compensated mode, the compensation terms are added to the SUM and
+     * STDEV - SQRT(M2/COUNT)
+     */
+    private void deriveAggregates(){
+        if(!dirty){
+            return;
+        }
+        if(sparse){
+            this.deriveSparseAggregates();
+        }
+        else if(compensated){
+            this.deriveCompensatedAggregates();
+        }
+        else if(aggregationType==AggregationType.ARITHMETIC){
+            avg=sum/count;
+            stdev=Math.sqrt(sumSquare/count-avg*avg);
+        }
+        else{
+            for(int i=0; i<size; i++){
+                double mean=sums[i]/counts[i];
+                avgs[i]=mean;
+                stdevs[i]=Math.sqrt(sumSquares[i]/counts[i]-mean*mean);
+            }
+        }
+        dirty=false;
+    }
+
+    /**
+     * Derives the aggregates of all the elements of sparse list states. The
+     * COUNT is the same for all elements and zero is the MAX or MIN of an
+     * element if not all the states have a non-zero value in it.
+     */
+    private void deriveSparseAggregates(){
+        for(int i=0; i<size; i++){
+            if(compensated){
+                double total=sums[i]+sumErrors[i];
+                sumErrors[i]-=total-sums[i];
+                sums[i]=total;
+                total=sumSquares[i]+sumSquareErrors[i];
+                sumSquareErrors[i]-=total-sumSquares[i];
+                sumSquares[i]=total;
+            }
+            double mean=sums[i]/sparseCount;
+            double variance=sumSquares[i]/sparseCount-mean*mean;
+            avgs[i]=mean;
+            stdevs[i]=Math.sqrt(compensated ? Math.max(0.0, variance) : variance);
+            counts[i]=sparseCount;
+            if(nonZeros[i]==sparseStates){
+                maxs[i]=nonZeroMaxs[i];
+                mins[i]=nonZeroMins[i];
+            }
+            else if(nonZeros[i]==0){
+                maxs[i]=0.0;
+                mins[i]=0.0;
+            }
+            else{
+                maxs[i]=Math.max(nonZeroMaxs[i], 0.0);
+                mins[i]=Math.min(nonZeroMins[i], 0.0);
+            }
+        }
+    }
+
+    /**
+     * Derives the AVG and STDEV in the compensated mode. The compensation terms
+     * are moved into the SUM and SUM_SQR without changing their total, so
+     * that the SUM and SUM_SQR are the closest doubles to the compensated sums.
+     */
+    private void deriveCompensatedAggregates(){
+        if(aggregationType==AggregationType.ARITHMETIC){
+            double total=sum+sumError;
+            sumError-=total-sum;
+            sum=total;
+            total=sumSquare+sumSquareError;
+            sumSquareError-=total-sumSquare;
+            sumSquare=total;
+            avg=sum/count;
+            stdev=Math.sqrt(m2/count);
+        }
+        else{
+            for(int i=0; i<size; i++){
+                double total=sums[i]+sumErrors[i];
+                sumErrors[i]-=total-sums[i];
+                sums[i]=total;
+                total=sumSquares[i]+sumSquareErrors[i];
+                sumSquareErrors[i]-=total-sumSquares[i];
+                sumSquares[i]=total;
+                avgs[i]=sums[i]/counts[i];
+                stdevs[i]=Math.sqrt(m2s[i]/counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the aggregate object of a specific aggregation function based on
+     * the selected aggregation type.
+     *
+     * @param function the aggregation function
+     * @return the aggregate object, a Double or a list of arithmetic states
+     */
+    public Object getAggregate(AggregationFunction function){
+        if(compensated || sparse || function==AggregationFunction.AVG || function==AggregationFunction.STDEV){
+            this.deriveAggregates();
+        }
+        switch(this.aggregationType){
+            case ARITHMETIC:
+                return this.getArithmeticAggregate(function);
+            case ARITHMETIC_LIST:
+                return this.getArithmeticListAggregate(function);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the value of an aggregate of arithmetic states
+     *
+     * @param function the <code>Function</code> of aggregate
+     * @return the value of the aggregate
+     */
+    private double getArithmeticAggregate(AggregationFunction function){
+        switch(function){
+            case SUM:
+                return sum;
+            case SUM_SQR:
+                return sumSquare;
+            case MAX:
+                return max;
+            case MIN:
+                return min;
+            case AVG:
+                return avg;
+            case STDEV:
+                return stdev;
+            case COUNT:
+                return count;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Creates the arithmetic states of an aggregate of arithmetic list states
+     *
+     * @param function the <code>Function</code> of aggregate
+     * @return the artihmetic states of the aggregate
+     */
+    private List<ArithmeticState> getArithmeticListAggregate(AggregationFunction function){
+        double[] values=this.getArithmeticListValues(function);
+        List<ArithmeticState> states=new ArrayList<ArithmeticState>(size);
+        if(values!=null){
+            for(int i=0; i<size; i++){
+                states.add(new ArithmeticState(values[i]));
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Provides the array of an aggregate of arithmetic list states. Only the
+     * first <code>getNumberOfStates()</code> elements are aggregates.
+     *
+     * @param function the <code>Function</code> of aggregate
+     * @return the array of the aggregate or null if the function is unknown
+     */
+    private double[] getArithmeticListValues(AggregationFunction function){
+        switch(function){
+            case SUM:
+                return sums;
+            case SUM_SQR:
+                return sumSquares;
+            case MAX:
+                return maxs;
+            case MIN:
+                return mins;
+            case AVG:
+                return avgs;
+            case STDEV:
+                return stdevs;
+            case COUNT:
+                return counts;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Creates an immutable copy of all the aggregates, after the AVG and STDEV
+     * are derived, including the quantile sketch, the distinct count, the
+     * histogram and the most frequent states if they are configured.
+     *
+     * @param aggregationEpoch the aggregation epoch of the aggregates
+     * @return the snapshot of the aggregates
+     */
+    public AggregateSnapshot createSnapshot(int aggregationEpoch){
+        this.deriveAggregates();
+        QuantileSketch quantiles=this.quantiles==null ? null : new QuantileSketch(this.quantiles);
+        if(aggregationType==AggregationType.ARITHMETIC){
+            return new AggregateSnapshot(aggregationEpoch, version, sum, sumSquare, max, min, avg, stdev, count,
+                    quantiles, this.getDistinctCount(), this.getHistogram(), this.getTopK());
+        }
+        return new AggregateSnapshot(aggregationEpoch, version, size, sums, sumSquares, maxs, mins, avgs, stdevs,
+                counts, quantiles, this.getDistinctCount(), this.getHistogram(), this.getTopK());
+    }
+
+    /**
+     * The version changes whenever the aggregates change, so that an unchanged
+     * snapshot does not need to be created again.
+     *
+     * @return the number of changes of the aggregates
+     */
+    public long getVersion(){
+        return version;
+    }
+
+    /**
+     * Estimates a quantile of the aggregated arithmetic states within the
+     * relative accuracy of the QUANTILE_ACCURACY parameter.
+     *
+     * @param quantile the rank of the value in [0, 1], e.g. 0.5 for the median
+     * @return the estimated quantile or NaN if there are no aggregates or no
+     * quantile sketch
+     */
+    public double getQuantile(double quantile){
+        if(quantiles==null){
+            return Double.NaN;
+        }
+        return quantiles.getQuantile(quantile);
+    }
+
+    /**
+     * @return the quantile sketch of the arithmetic states or null if the
+     * QUANTILE_ACCURACY parameter is not given
+     */
+    public QuantileSketch getQuantileSketch(){
+        return quantiles;
+    }
+
+    /**
+     * Estimates the number of distinct values, or lists of values, added since
+     * the aggregates were initialized.
+     *
+     * @return the estimated number of distinct values or NaN if the
+     * DISTINCT_PRECISION parameter is not given
+     */
+    public double getDistinctCount(){
+        if(distinct==null){
+            return Double.NaN;
+        }
+        return distinct.getEstimate();
+    }
+
+    /**
+     * Clears the distinct values counter, so that it can be rebuilt from the
+     * states that are still aggregated with <code>addDistinctCount</code>.
+     */
+    public void clearDistinctCount(){
+        if(distinct!=null){
+            version++;
+            distinct.clear();
+        }
+    }
+
+    /**
+     * Counts the value, or the list of values, of an aggregated state in the
+     * distinct values counter without changing the other aggregates.
+     *
+     * @param state an aggregated state
+     */
+    public void addDistinctCount(State state){
+        if(distinct==null){
+            return;
+        }
+        version++;
+        if(state instanceof ArithmeticState){
+            if(((ArithmeticState)state).containsValue()){
+                distinct.add(MembershipDigest.digest(((ArithmeticState)state).getValue()));
+            }
+        }
+        else if(state instanceof ArithmeticListState){
+            int length=this.copyValues((ArithmeticListState)state);
+            distinct.add(MembershipDigest.digest(buffer, length));
+        }
+        else if(state instanceof SparseListState){
+            SparseListState sparseState=(SparseListState)state;
+            distinct.add(MembershipDigest.digest(sparseState.getDimensions(), sparseState.indices(), sparseState.values()));
+        }
+    }
+
+    /**
+     * @return the distinct values counter or null if the DISTINCT_PRECISION
+     * parameter is not given
+     */
+    public HyperLogLog getDistinctCounter(){
+        return distinct;
+    }
+
+    /**
+     * @return a copy of the counts of the histogram buckets or null if the
+     * HISTOGRAM_EDGES parameter is not given
+     */
+    public long[] getHistogram(){
+        if(histogram==null){
+            return null;
+        }
+        return histogram.getCounts();
+    }
+
+    /**
+     * @return the histogram of the arithmetic states or null if the
+     * HISTOGRAM_EDGES parameter is not given
+     */
+    public Histogram getHistogramState(){
+        return histogram;
+    }
+
+    /**
+     * Provides the most frequently aggregated states by their identifiers.
+     *
+     * @return at most k state identifiers with their estimated counts, ordered
+     * by decreasing count, or null if the TOP_K parameter is not given
+     */
+    public Map<UUID, Long> getTopK(){
+        if(heavyHitters==null){
+            return null;
+        }
+        return heavyHitters.getTopK();
+    }
+
+    /**
+     * @return the number of arithmetic states of the aggregates of arithmetic
+     * list states
+     */
+    public int getNumberOfStates(){
+        return size;
+    }
+
+    /**
+     * Removes all the aggregates and initializes them as NaN or empty
+     *
+     * @param selectedType the selected type of the initialized aggregation state
+     */
+    public void resetAggregationState(AggregationType selectedType){
+        this.initAggregates(selectedType);
+    }
+
+    /**
+     * Provides the Type of aggregation configured
+     *
+     * @return the Type of aggregation
+     */
+    public AggregationType getAggregationType(){
+        return this.aggregationType;
+    }
+
+    /**
+     * Provides information about the computed aggregates
+     *
+     * @return the string information
+     */
+    @Override
+    public String toString(){
+        this.deriveAggregates();
+        if(this.aggregationType.equals(AggregationType.ARITHMETIC)){
+            return"Aggregate ID: "+this.getStateId()+
+                "\n["+AggregationFunction.SUM.name()+"="+sum+", "+
+              AggregationFunction.MAX.name()+"="+max+", "+
+              AggregationFunction.MIN.name()+"="+min+", "+
+              AggregationFunction.COUNT.name()+"="+count+", "+
+              AggregationFunction.AVG.name()+"="+avg+", "+
+              AggregationFunction.STDEV.name()+"="+stdev+"]";
+        }
+        return"Aggregate ID: "+this.getStateId()+
+            "\n["+AggregationFunction.SUM.name()+"="+getArithmeticListAggregate(AggregationFunction.SUM)+", "+
+          AggregationFunction.SUM_SQR.name()+"="+getArithmeticListAggregate(AggregationFunction.SUM_SQR)+", "+
+          AggregationFunction.MAX.name()+"="+getArithmeticListAggregate(AggregationFunction.MAX)+", "+
+          AggregationFunction.MIN.name()+"="+getArithmeticListAggregate(AggregationFunction.MIN)+", "+
+          AggregationFunction.COUNT.name()+"="+getArithmeticListAggregate(AggregationFunction.COUNT)+", "+
+          AggregationFunction.STDEV.name()+"="+getArithmeticListAggregate(AggregationFunction.STDEV)+"]";
+    }
+}
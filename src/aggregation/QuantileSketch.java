@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch with a fixed memory that supports the removal
+ * of previously added values. Values are counted in logarithmic bins, so that
+ * every value of a bin is within a relative accuracy a of the value that
+ * represents the bin, as described in:
+ *
+ * C. Masson, J. E. Rim, H. K. Lee, DDSketch: A Fast and Fully-Mergeable
+ * Quantile Sketch with Relative-Error Guarantees, VLDB 2019
+ *
+ * A positive value v is counted in the bin ceil(log(v)/log(g)), where
+ * g=(1+a)/(1-a), the negative values are counted in separate bins by their
+ * absolute value and the zeros in a single counter. The positive and negative
+ * bins are windows of a fixed number of consecutive bins. If the values
+ * exceed the range of a window, the lowest bins are collapsed in one bin and
+ * only the quantiles of the collapsed values lose their accuracy. As a value
+ * is always removed from the bin it was added to, removals do not introduce
+ * any error.
+ *
+ * @author Evangelos
+ */
+public class QuantileSketch {
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Bins positives;
+    private final Bins negatives;
+    private long zeros;
+    private long count;
+
+    /**
+     * Initializes an empty sketch
+     *
+     * @param accuracy the relative accuracy of the quantiles, in (0, 1)
+     * @param bins the number of bins of the positive and the negative values
+     */
+    public QuantileSketch(double accuracy, int bins){
+        this.accuracy=accuracy;
+        this.gamma=(1.0+accuracy)/(1.0-accuracy);
+        this.logGamma=Math.log(gamma);
+        this.positives=new Bins(bins);
+        this.negatives=new Bins(bins);
+        this.clear();
+    }
+
+    /**
+     * Initializes an exact copy of a sketch
+     *
+     * @param sketch the copied sketch
+     */
+    public QuantileSketch(QuantileSketch sketch){
+        this.accuracy=sketch.accuracy;
+        this.gamma=sketch.gamma;
+        this.logGamma=sketch.logGamma;
+        this.positives=new Bins(sketch.positives);
+        this.negatives=new Bins(sketch.negatives);
+        this.zeros=sketch.zeros;
+        this.count=sketch.count;
+    }
+
+    public void add(double value){
+        this.update(value, 1);
+    }
+
+    /**
+     * Removes a value that has been added before.
+     */
+    public void remove(double value){
+        this.update(value, -1);
+    }
+
+    /**
+     * Adds the values of a sketch with the same accuracy in this sketch.
+     *
+     * @param sketch the merged sketch
+     */
+    public void merge(QuantileSketch sketch){
+        if(sketch.gamma!=gamma){
+            throw new IllegalArgumentException("Sketches with different accuracy cannot be merged");
+        }
+        positives.merge(sketch.positives);
+        negatives.merge(sketch.negatives);
+        zeros+=sketch.zeros;
+        count+=sketch.count;
+    }
+
+    public void clear(){
+        positives.clear();
+        negatives.clear();
+        zeros=0;
+        count=0;
+    }
+
+    /**
+     * Estimates the value with the given rank.
+     *
+     * @param quantile the rank of the value in [0, 1], e.g. 0.5 for the median
+     * @return the estimated quantile or NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile){
+        if(count<=0){
+            return Double.NaN;
+        }
+        long rank=(long)(Math.max(0.0, Math.min(1.0, quantile))*(count-1));
+        if(rank<negatives.count){
+            return -this.getValue(negatives.getIndexDescending(rank));
+        }
+        rank-=negatives.count;
+        if(rank<zeros){
+            return 0.0;
+        }
+        rank-=zeros;
+        return this.getValue(positives.getIndexAscending(rank));
+    }
+
+    /**
+     * @return the number of values in the sketch
+     */
+    public long getCount(){
+        return count;
+    }
+
+    public double getAccuracy(){
+        return accuracy;
+    }
+
+    private void update(double value, int delta){
+        if(value>0.0){
+            positives.update(this.getIndex(value), delta);
+        }
+        else if(value<0.0){
+            negatives.update(this.getIndex(-value), delta);
+        }
+        else{
+            zeros+=delta;
+        }
+        count+=delta;
+        if(count==0){
+            this.clear();
+        }
+    }
+
+    private int getIndex(double value){
+        return (int)Math.ceil(Math.log(value)/logGamma);
+    }
+
+    /**
+     * The value in the middle of the bin, within the relative accuracy of all
+     * its values.
+     */
+    private double getValue(int index){
+        return 2.0*Math.pow(gamma, index)/(gamma+1.0);
+    }
+
+    /**
+     * A window of consecutive bins. Bins below the lowest collapsed bin are
+     * counted in the collapsed bin.
+     */
+    private static class Bins {
+
+        private final long[] counts;
+        private int offset;
+        private int lowest;
+        private int highest;
+        private long count;
+
+        private Bins(int bins){
+            this.counts=new long[bins];
+        }
+
+        private Bins(Bins bins){
+            this.counts=bins.counts.clone();
+            this.offset=bins.offset;
+            this.lowest=bins.lowest;
+            this.highest=bins.highest;
+            this.count=bins.count;
+        }
+
+        private void clear(){
+            Arrays.fill(counts, 0);
+            count=0;
+            lowest=Integer.MIN_VALUE;
+            highest=Integer.MIN_VALUE;
+        }
+
+        private void update(int index, long delta){
+            if(count==0 && lowest==Integer.MIN_VALUE){
+                offset=index-counts.length/2;
+                highest=Integer.MIN_VALUE;
+            }
+            index=Math.max(index, lowest);
+            if(index>=offset+counts.length){
+                this.collapse(index-counts.length+1);
+            }
+            else if(index<offset){
+                if((long)highest-index<counts.length){
+                    this.shift(index);
+                }
+                else{
+                    lowest=offset;
+                    index=offset;
+                }
+            }
+            counts[index-offset]+=delta;
+            count+=delta;
+            highest=Math.max(highest, index);
+        }
+
+        /**
+         * Moves the window up to a new offset and counts the values of the
+         * lower bins in the new lowest bin.
+         */
+        private void collapse(int newOffset){
+            int shift=newOffset-offset;
+            long collapsed=0;
+            for(int i=0; i<Math.min(shift+1, counts.length); i++){
+                collapsed+=counts[i];
+            }
+            if(shift<counts.length){
+                System.arraycopy(counts, shift, counts, 0, counts.length-shift);
+                Arrays.fill(counts, counts.length-shift, counts.length, 0);
+            }
+            else{
+                Arrays.fill(counts, 0);
+            }
+            counts[0]=collapsed;
+            offset=newOffset;
+            lowest=newOffset;
+        }
+
+        /**
+         * Moves the window down to a new offset, all bins remain in the window.
+         */
+        private void shift(int newOffset){
+            int shift=offset-newOffset;
+            System.arraycopy(counts, 0, counts, shift, counts.length-shift);
+            Arrays.fill(counts, 0, shift, 0);
+            offset=newOffset;
+        }
+
+        private void merge(Bins bins){
+            if(bins.lowest>lowest){
+                this.raiseLowest(bins.lowest);
+            }
+            for(int i=0; i<bins.counts.length; i++){
+                if(bins.counts[i]!=0){
+                    this.update(bins.offset+i, bins.counts[i]);
+                }
+            }
+        }
+
+        /**
+         * Counts the values of the bins below a bin in that bin.
+         */
+        private void raiseLowest(int index){
+            if(count==0){
+                offset=index;
+                lowest=index;
+                return;
+            }
+            if(index>=offset+counts.length){
+                this.collapse(index);
+                return;
+            }
+            for(int i=0; i<index-offset; i++){
+                counts[index-offset]+=counts[i];
+                counts[i]=0;
+            }
+            lowest=index;
+        }
+
+        private int getIndexAscending(long rank){
+            long seen=0;
+            for(int i=0; i<counts.length; i++){
+                seen+=counts[i];
+                if(seen>rank){
+                    return offset+i;
+                }
+            }
+            return offset+counts.length-1;
+        }
+
+        private int getIndexDescending(long rank){
+            long seen=0;
+            for(int i=counts.length-1; i>=0; i--){
+                seen+=counts[i];
+                if(seen>rank){
+                    return offset+i;
+                }
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package aggregation;
+
+import dsutil.generic.state.State;
+import java.util.UUID;
+
+/**
+ * A state of a list of arithmetic values in which most values are zero. Only
+ * the non-zero values are stored, with their indices, in two parallel
+ * primitive arrays that are sorted by index. It is aggregated as an arithmetic
+ * list state of <code>getDimensions()</code> values by
+ * <code>PrimitiveAggregationState</code>, which updates only the aggregates
+ * of the non-zero values.
+ *
+ * As a state, it is serialized in the push messages with its two arrays, so
+ * that only the non-zero values are sent instead of an arithmetic state for
+ * every value of the list.
+ *
+ * @author Evangelos
+ */
+public class SparseListState extends State{
+
+    private static final long serialVersionUID=1L;
+
+    private final int dimensions;
+    private final int[] indices;
+    private final double[] values;
+
+    /**
+     * Initializes a sparse list state from the non-zero values of a list
+     *
+     * @param values the values of the list
+     */
+    public SparseListState(double[] values){
+        super();
+        int nonZeros=0;
+        for(int i=0; i<values.length; i++){
+            if(values[i]!=0.0){
+                nonZeros++;
+            }
+        }
+        this.dimensions=values.length;
+        this.indices=new int[nonZeros];
+        this.values=new double[nonZeros];
+        for(int i=0, k=0; i<values.length; i++){
+            if(values[i]!=0.0){
+                this.indices[k]=i;
+                this.values[k]=values[i];
+                k++;
+            }
+        }
+    }
+
+    /**
+     * Initializes a sparse list state from the indices of its non-zero values.
+     * Zeros among the given values are dropped.
+     *
+     * @param dimensions the number of values of the list
+     * @param indices the increasing indices of the values in [0, dimensions)
+     * @param values the values at the indices
+     */
+    public SparseListState(int dimensions, int[] indices, double[] values){
+        this(UUID.randomUUID(), dimensions, indices, values);
+    }
+
+    /**
+     * Initializes a sparse list state with a given identifier, e.g. when it is
+     * decoded from a message.
+     *
+     * @param stateId the identifier of the state
+     * @param dimensions the number of values of the list
+     * @param indices the increasing indices of the values in [0, dimensions)
+     * @param values the values at the indices
+     */
+    public SparseListState(UUID stateId, int dimensions, int[] indices, double[] values){
+        super(stateId);
+        if(indices.length!=values.length){
+            throw new IllegalArgumentException("A sparse list needs a value for every index");
+        }
+        int nonZeros=0;
+        for(int k=0; k<indices.length; k++){
+            if(indices[k]<0 || indices[k]>=dimensions || (k>0 && indices[k]<=indices[k-1])){
+                throw new IllegalArgumentException("The indices of a sparse list must be increasing and within the dimensions");
+            }
+            if(values[k]!=0.0){
+                nonZeros++;
+            }
+        }
+        this.dimensions=dimensions;
+        this.indices=new int[nonZeros];
+        this.values=new double[nonZeros];
+        for(int k=0, n=0; k<indices.length; k++){
+            if(values[k]!=0.0){
+                this.indices[n]=indices[k];
+                this.values[n]=values[k];
+                n++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of values of the list, including the zeros
+     */
+    public int getDimensions(){
+        return dimensions;
+    }
+
+    /**
+     * @return the number of non-zero values
+     */
+    public int getNumberOfNonZeros(){
+        return indices.length;
+    }
+
+    /**
+     * @param k the position of a non-zero value, in [0, getNumberOfNonZeros())
+     * @return the index of the k-th non-zero value in the list
+     */
+    public int getIndex(int k){
+        return indices[k];
+    }
+
+    /**
+     * @param k the position of a non-zero value, in [0, getNumberOfNonZeros())
+     * @return the k-th non-zero value
+     */
+    public double getValue(int k){
+        return values[k];
+    }
+
+    /**
+     * Provides the value at an index of the list by binary search over the
+     * indices of the non-zero values.
+     *
+     * @param index the index in the list
+     * @return the value, zero if it is not stored
+     */
+    public double get(int index){
+        int low=0;
+        int high=indices.length-1;
+        while(low<=high){
+            int middle=(low+high)>>>1;
+            if(indices[middle]<index){
+                low=middle+1;
+            }
+            else if(indices[middle]>index){
+                high=middle-1;
+            }
+            else{
+                return values[middle];
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * @return the list as an array of all its values
+     */
+    public double[] toArray(){
+        double[] array=new double[dimensions];
+        for(int k=0; k<indices.length; k++){
+            array[indices[k]]=values[k];
+        }
+        return array;
+    }
+
+    /**
+     * The sorted indices of the non-zero values, shared with the aggregation
+     * state without a copy.
+     */
+    int[] indices(){
+        return indices;
+    }
+
+    /**
+     * The non-zero values, shared with the aggregation state without a copy.
+     */
+    double[] values(){
+        return values;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder builder=new StringBuilder("Sparse list ID: "+this.getStateId()+"\n[dimensions="+dimensions);
+        for(int k=0; k<indices.length; k++){
+            builder.append(", ").append(indices[k]).append('=').append(values[k]);
+        }
+        return builder.append(']').toString();
+    }
+}
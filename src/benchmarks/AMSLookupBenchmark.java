@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package benchmarks;
+
+import consistency.BitSetBloomFilter;
+import consistency.BitSlicedBloomFilterMatrix;
+import java.util.Random;
+
+/**
+ * Compares the lookup of the positive AMS memberships of an aggregator in the
+ * disseminator: a loop that probes the AMS bloom filter of every possible state
+ * against a single pass over the bit-sliced matrix of all the AMSs.
+ *
+ * Every aggregator is added in the AMS of one random state. The number of
+ * possible states grows from 5 to 1000.
+ *
+ * @author Evangelos
+ */
+public class AMSLookupBenchmark {
+
+    private final static int[] states={5, 10, 50, 100, 500, 1000};
+    private final static int m=16;
+    private final static int k=24;
+    private final static int aggregators=1000;
+    private final static int lookups=200000;
+    private final static int rounds=5;
+
+    public static void main(String[] args) {
+        Random random=new Random(1);
+        long[] digests=new long[aggregators];
+        for(int i=0; i<aggregators; i++){
+            digests[i]=random.nextLong();
+        }
+        System.out.println("states\tper-state loop (ns/lookup)\tbit-sliced (ns/lookup)");
+        for(int numOfStates:states){
+            BitSetBloomFilter[] filters=new BitSetBloomFilter[numOfStates];
+            for(int s=0; s<numOfStates; s++){
+                filters[s]=new BitSetBloomFilter(m, k);
+            }
+            BitSlicedBloomFilterMatrix matrix=new BitSlicedBloomFilterMatrix(m, k, numOfStates);
+            for(int i=0; i<aggregators; i++){
+                int s=random.nextInt(numOfStates);
+                filters[s].add(digests[i]);
+                matrix.add(s, digests[i]);
+            }
+            int lookupsPerState=Math.max(1000, lookups/numOfStates);
+            double loop=Double.MAX_VALUE;
+            double sliced=Double.MAX_VALUE;
+            long check=0;
+            for(int r=0; r<rounds; r++){
+                long start=System.nanoTime();
+                for(int i=0; i<lookupsPerState; i++){
+                    long digest=digests[i%aggregators];
+                    for(int s=0; s<numOfStates; s++){
+                        if(filters[s].contains(digest)){
+                            check+=s;
+                        }
+                    }
+                }
+                loop=Math.min(loop, (System.nanoTime()-start)/(double)lookupsPerState);
+                long[] positive=new long[matrix.getWords()];
+                start=System.nanoTime();
+                for(int i=0; i<lookupsPerState; i++){
+                    long digest=digests[i%aggregators];
+                    if(matrix.contains(digest, positive)){
+                        for(int w=0; w<positive.length; w++){
+                            long columns=positive[w];
+                            while(columns!=0L){
+                                check-=(w<<6)+Long.numberOfTrailingZeros(columns);
+                                columns&=columns-1;
+                            }
+                        }
+                    }
+                }
+                sliced=Math.min(sliced, (System.nanoTime()-start)/(double)lookupsPerState);
+            }
+            if(check!=0){
+                System.out.println("Inconsistent positive AMS memberships: "+check);
+            }
+            System.out.println(numOfStates+"\t"+String.format("%.1f", loop)+"\t"+String.format("%.1f", sliced));
+        }
+    }
+}
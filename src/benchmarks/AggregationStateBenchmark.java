@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package benchmarks;
+
+import aggregation.AggregationState;
+import aggregation.PrimitiveAggregationState;
+import dsutil.generic.state.ArithmeticListState;
+import dsutil.generic.state.ArithmeticState;
+import dsutil.generic.state.State;
+import dsutil.generic.state.StateException;
+import dsutil.protopeer.services.aggregation.AggregationFunction;
+import dsutil.protopeer.services.aggregation.AggregationType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the aggregation state with the aggregates in the state properties
+ * against the one with the aggregates in primitive fields and arrays. Both
+ * aggregation states first process the same sequence of additions and
+ * removals and their aggregates are checked for identical results. Then the
+ * throughput of <code>addState</code> and <code>removeState</code> is
+ * measured for arithmetic states and arithmetic list states of different
+ * lengths.
+ *
+ * @author Evangelos
+ */
+public class AggregationStateBenchmark {
+
+    private final static int[] lengths={1, 16, 128};
+    private final static int numOfStates=1000;
+    private final static int operations=200000;
+    private final static int rounds=5;
+    private final static AggregationFunction[] functions={AggregationFunction.SUM, AggregationFunction.SUM_SQR,
+        AggregationFunction.MAX, AggregationFunction.MIN, AggregationFunction.AVG, AggregationFunction.STDEV,
+        AggregationFunction.COUNT};
+
+    public static void main(String[] args) throws StateException {
+        Random random=new Random(1);
+        System.out.println("type\tlength\tproperties (ns/op)\tprimitive (ns/op)");
+        for(int length:lengths){
+            AggregationType type=length==1 ? AggregationType.ARITHMETIC : AggregationType.ARITHMETIC_LIST;
+            State[] states=new State[numOfStates];
+            for(int i=0; i<numOfStates; i++){
+                states[i]=createState(random, length);
+            }
+            AggregationState properties=new AggregationState(type);
+            PrimitiveAggregationState primitive=new PrimitiveAggregationState(type);
+            run(properties, primitive, states);
+            check(properties, primitive);
+            double propertiesTime=Double.MAX_VALUE;
+            double primitiveTime=Double.MAX_VALUE;
+            for(int r=0; r<rounds; r++){
+                long start=System.nanoTime();
+                run(properties, null, states);
+                propertiesTime=Math.min(propertiesTime, (System.nanoTime()-start)/(double)operations);
+                start=System.nanoTime();
+                run(null, primitive, states);
+                primitiveTime=Math.min(primitiveTime, (System.nanoTime()-start)/(double)operations);
+            }
+            System.out.println(type+"\t"+length+"\t"+String.format("%.1f", propertiesTime)+"\t"+String.format("%.1f", primitiveTime));
+        }
+    }
+
+    /**
+     * Adds every state and then replaces the states cyclically, i.e. a state
+     * is removed and added again, as in the REPLACE outcome of the aggregator.
+     */
+    private static void run(AggregationState properties, PrimitiveAggregationState primitive, State[] states) throws StateException {
+        for(int i=0; i<operations; i++){
+            State state=states[i%states.length];
+            if(i>=states.length && (i&1)==0){
+                if(properties!=null){
+                    properties.removeState(state);
+                }
+                if(primitive!=null){
+                    primitive.removeState(state);
+                }
+            }
+            else{
+                if(properties!=null){
+                    properties.addState(state);
+                }
+                if(primitive!=null){
+                    primitive.addState(state);
+                }
+            }
+        }
+    }
+
+    private static State createState(Random random, int length){
+        if(length==1){
+            return new ArithmeticState(random.nextDouble());
+        }
+        List<ArithmeticState> list=new ArrayList<ArithmeticState>();
+        for(int i=0; i<length; i++){
+            list.add(new ArithmeticState(random.nextDouble()));
+        }
+        return new ArithmeticListState(list);
+    }
+
+    private static void check(AggregationState properties, PrimitiveAggregationState primitive){
+        for(AggregationFunction function:functions){
+            Object expected=properties.getAggregate(function);
+            Object actual=primitive.getAggregate(function);
+            if(expected instanceof Double){
+                if(Double.doubleToLongBits((Double)expected)!=Double.doubleToLongBits((Double)actual)){
+                    System.out.println("Different "+function+": "+expected+" "+actual);
+                }
+            }
+            else{
+                List<?> expectedList=(List<?>)expected;
+                List<?> actualList=(List<?>)actual;
+                for(int i=0; i<expectedList.size(); i++){
+                    double expectedValue=((ArithmeticState)expectedList.get(i)).getValue();
+                    double actualValue=((ArithmeticState)actualList.get(i)).getValue();
+                    if(Double.doubleToLongBits(expectedValue)!=Double.doubleToLongBits(actualValue)){
+                        System.out.println("Different "+function+"["+i+"]: "+expectedValue+" "+actualValue);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package benchmarks;
+
+import aggregation.AggregationState;
+import aggregation.PrimitiveAggregationState;
+import dsutil.generic.state.ArithmeticListState;
+import dsutil.generic.state.ArithmeticState;
+import dsutil.generic.state.StateException;
+import dsutil.protopeer.services.aggregation.AggregationFunction;
+import dsutil.protopeer.services.aggregation.AggregationType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the aggregation of arithmetic lists with the aggregates in the
+ * state properties, the aggregation of arithmetic list states with the
+ * aggregates in primitive arrays and the aggregation of primitive arrays of
+ * values with <code>addValues</code> and <code>removeValues</code>. The
+ * three aggregation states process the same sequence of additions and
+ * removals and their aggregates are checked for identical results, the
+ * benchmark exits with status 1 otherwise. The time is measured per aggregated
+ * element for lists of different lengths.
+ *
+ * @author Evangelos
+ */
+public class ListAggregationBenchmark {
+
+    private final static int[] lengths={16, 1000, 100000};
+    private final static int elements=4000000;
+    private final static int stateElements=400000;
+    private final static int rounds=3;
+    private final static AggregationFunction[] functions={AggregationFunction.SUM, AggregationFunction.SUM_SQR,
+        AggregationFunction.MAX, AggregationFunction.MIN, AggregationFunction.AVG, AggregationFunction.STDEV,
+        AggregationFunction.COUNT};
+
+    public static void main(String[] args) throws StateException {
+        Random random=new Random(1);
+        System.out.println("length\tproperties (ns/element)\tlist states (ns/element)\tarrays (ns/element)");
+        for(int length:lengths){
+            int numOfStates=Math.max(4, Math.min(1000, stateElements/length));
+            int operations=Math.max(2*numOfStates, elements/length);
+            ArithmeticListState[] states=new ArithmeticListState[numOfStates];
+            double[][] values=new double[numOfStates][length];
+            for(int i=0; i<numOfStates; i++){
+                List<ArithmeticState> list=new ArrayList<ArithmeticState>(length);
+                for(int j=0; j<length; j++){
+                    values[i][j]=random.nextDouble();
+                    list.add(new ArithmeticState(values[i][j]));
+                }
+                states[i]=new ArithmeticListState(list);
+            }
+            AggregationState properties=new AggregationState(AggregationType.ARITHMETIC_LIST);
+            PrimitiveAggregationState lists=new PrimitiveAggregationState(AggregationType.ARITHMETIC_LIST);
+            PrimitiveAggregationState arrays=new PrimitiveAggregationState(AggregationType.ARITHMETIC_LIST);
+            runProperties(properties, states, operations);
+            runLists(lists, states, operations);
+            runArrays(arrays, values, operations);
+            if(!check(properties, lists) || !check(properties, arrays)){
+                System.exit(1);
+            }
+            double total=(double)operations*length;
+            double propertiesTime=Double.MAX_VALUE;
+            double listsTime=Double.MAX_VALUE;
+            double arraysTime=Double.MAX_VALUE;
+            for(int r=0; r<rounds; r++){
+                long start=System.nanoTime();
+                runProperties(properties, states, operations);
+                propertiesTime=Math.min(propertiesTime, (System.nanoTime()-start)/total);
+                start=System.nanoTime();
+                runLists(lists, states, operations);
+                listsTime=Math.min(listsTime, (System.nanoTime()-start)/total);
+                start=System.nanoTime();
+                runArrays(arrays, values, operations);
+                arraysTime=Math.min(arraysTime, (System.nanoTime()-start)/total);
+            }
+            System.out.println(length+"\t"+String.format("%.2f", propertiesTime)+"\t"+String.format("%.2f", listsTime)+"\t"+
+                    String.format("%.2f", arraysTime));
+        }
+    }
+
+    /**
+     * Adds every state and then replaces the states cyclically, i.e. a state
+     * is removed and added again, as in the REPLACE outcome of the aggregator.
+     */
+    private static void runProperties(AggregationState aggregates, ArithmeticListState[] states, int operations) throws StateException {
+        for(int i=0; i<operations; i++){
+            if(i>=states.length && (i&1)==0){
+                aggregates.removeState(states[i%states.length]);
+            }
+            else{
+                aggregates.addState(states[i%states.length]);
+            }
+        }
+    }
+
+    private static void runLists(PrimitiveAggregationState aggregates, ArithmeticListState[] states, int operations) throws StateException {
+        for(int i=0; i<operations; i++){
+            if(i>=states.length && (i&1)==0){
+                aggregates.removeState(states[i%states.length]);
+            }
+            else{
+                aggregates.addState(states[i%states.length]);
+            }
+        }
+    }
+
+    private static void runArrays(PrimitiveAggregationState aggregates, double[][] values, int operations) throws StateException {
+        for(int i=0; i<operations; i++){
+            if(i>=values.length && (i&1)==0){
+                aggregates.removeValues(values[i%values.length]);
+            }
+            else{
+                aggregates.addValues(values[i%values.length]);
+            }
+        }
+    }
+
+    /**
+     * Checks that the aggregates are bit-identical
+     *
+     * @return false if an aggregate differs
+     */
+    private static boolean check(AggregationState expectedState, PrimitiveAggregationState actualState){
+        for(AggregationFunction function:functions){
+            List<?> expected=(List<?>)expectedState.getAggregate(function);
+            List<?> actual=(List<?>)actualState.getAggregate(function);
+            for(int i=0; i<expected.size(); i++){
+                double expectedValue=((ArithmeticState)expected.get(i)).getValue();
+                double actualValue=((ArithmeticState)actual.get(i)).getValue();
+                if(Double.doubleToLongBits(expectedValue)!=Double.doubleToLongBits(actualValue)){
+                    System.out.println("Different "+function+"["+i+"]: "+expectedValue+" "+actualValue);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package benchmarks;
+
+import aggregation.SparseListState;
+import communication.DIASMessType;
+import communication.Pull;
+import communication.Push;
+import consistency.AggregationOutcome;
+import consistency.AggregatorReport;
+import consistency.DisseminatorReport;
+import dsutil.generic.state.ArithmeticListState;
+import dsutil.generic.state.ArithmeticState;
+import dsutil.generic.state.State;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the serialized size and the encoding and decoding time of the push
+ * and pull messages in their compact binary form with the default
+ * serialization of the previous messages, which carried the report hash map of
+ * a single session. The reports are created for selected arithmetic states,
+ * arithmetic list states and sparse list states, as the disseminators and
+ * aggregators create them, and the decoded reports are checked for equal
+ * states and values.
+ *
+ * @author Evangelos
+ */
+public class MessageCodecBenchmark {
+
+    private final static int listLength=100;
+    private final static int dimensions=100000;
+    private final static int nonZeros=50;
+    private final static int operations=5000;
+    private final static int rounds=3;
+    private static Object decoded;
+
+    /**
+     * The push message before the binary form
+     */
+    private static class SerializedPush implements Serializable{
+        private static final long serialVersionUID=1L;
+
+        public DIASMessType type=DIASMessType.PUSH;
+        public int aggregationEpoch;
+        public Serializable sender;
+        public DisseminatorReport report;
+    }
+
+    /**
+     * The pull message before the binary form
+     */
+    private static class SerializedPull implements Serializable{
+        private static final long serialVersionUID=1L;
+
+        public DIASMessType type=DIASMessType.PULL;
+        public int aggregationEpoch;
+        public Serializable sender;
+        public AggregatorReport report;
+    }
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        Random random=new Random(1);
+        System.out.println("state\tmessage\tserialized (bytes)\tbinary (bytes)\tserialized (ns/message)\tbinary (ns/message)");
+        String[] names={"arithmetic", "list", "sparse"};
+        for(String name:names){
+            State[] states=new State[3];
+            for(int i=0; i<states.length; i++){
+                states[i]=createState(name, random);
+            }
+            DisseminatorReport disseminatorReport=createDisseminatorReport(states, random);
+            AggregatorReport aggregatorReport=createAggregatorReport(states);
+            Push push=new Push(new String[]{"default"}, new int[]{7});
+            push.reports[0]=disseminatorReport;
+            SerializedPush serializedPush=new SerializedPush();
+            serializedPush.aggregationEpoch=7;
+            serializedPush.report=disseminatorReport;
+            Pull pull=new Pull(new String[]{"default"}, new int[]{7});
+            pull.reports[0]=aggregatorReport;
+            SerializedPull serializedPull=new SerializedPull();
+            serializedPull.aggregationEpoch=7;
+            serializedPull.report=aggregatorReport;
+            checkDisseminatorReport(disseminatorReport, ((Push)decode(encode(push))).reports[0]);
+            checkDisseminatorReport(disseminatorReport, ((SerializedPush)decode(encode(serializedPush))).report);
+            checkAggregatorReport(aggregatorReport, ((Pull)decode(encode(pull))).reports[0]);
+            run(name, "push", serializedPush, push);
+            run(name, "pull", serializedPull, pull);
+        }
+    }
+
+    private static void run(String name, String message, Object serialized, Object binary) throws IOException, ClassNotFoundException {
+        int serializedSize=encode(serialized).length;
+        int binarySize=encode(binary).length;
+        double serializedTime=Double.MAX_VALUE;
+        double binaryTime=Double.MAX_VALUE;
+        for(int r=0; r<rounds; r++){
+            serializedTime=Math.min(serializedTime, time(serialized));
+            binaryTime=Math.min(binaryTime, time(binary));
+        }
+        System.out.println(name+"\t"+message+"\t"+serializedSize+"\t"+binarySize+"\t"+String.format("%.0f", serializedTime)+"\t"+
+                String.format("%.0f", binaryTime));
+    }
+
+    /**
+     * Encodes and decodes the message and returns the time per message
+     */
+    private static double time(Object message) throws IOException, ClassNotFoundException {
+        long start=System.nanoTime();
+        for(int i=0; i<operations; i++){
+            decoded=decode(encode(message));
+        }
+        return (System.nanoTime()-start)/(double)operations;
+    }
+
+    private static byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+        ObjectOutputStream out=new ObjectOutputStream(bytes);
+        out.writeObject(message);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object decode(byte[] message) throws IOException, ClassNotFoundException {
+        ObjectInputStream in=new ObjectInputStream(new ByteArrayInputStream(message));
+        Object object=in.readObject();
+        in.close();
+        return object;
+    }
+
+    private static State createState(String name, Random random){
+        if(name.equals("arithmetic")){
+            return new ArithmeticState(random.nextDouble());
+        }
+        if(name.equals("list")){
+            List<ArithmeticState> list=new ArrayList<ArithmeticState>(listLength);
+            for(int j=0; j<listLength; j++){
+                list.add(new ArithmeticState(random.nextDouble()));
+            }
+            return new ArithmeticListState(list);
+        }
+        int[] indices=new int[nonZeros];
+        double[] values=new double[nonZeros];
+        for(int k=0; k<nonZeros; k++){
+            indices[k]=k*(dimensions/nonZeros)+random.nextInt(dimensions/nonZeros);
+            values[k]=random.nextDouble();
+        }
+        return new SparseListState(dimensions, indices, values);
+    }
+
+    /**
+     * The report of a disseminator that has changed its selected state from
+     * the second to the first state, while the AMS of both states are
+     * positive for the aggregator.
+     */
+    private static DisseminatorReport createDisseminatorReport(State[] states, Random random){
+        HashSet<State> posAMS=new HashSet<State>();
+        HashMap<UUID, Double> posAMSFalsePos=new HashMap<UUID, Double>();
+        for(int i=0; i<2; i++){
+            posAMS.add(states[i]);
+            posAMSFalsePos.put(states[i].getStateId(), (double)(float)(random.nextDouble()/100));
+        }
+        return new DisseminatorReport(states[0], posAMS, posAMSFalsePos, true, (double)(float)(random.nextDouble()/100), null);
+    }
+
+    /**
+     * The report of an aggregator that has replaced the state of the
+     * disseminator.
+     */
+    private static AggregatorReport createAggregatorReport(State[] states){
+        return new AggregatorReport(true, AggregationOutcome.REPLACE, states[1], states[0]);
+    }
+
+    private static void checkDisseminatorReport(DisseminatorReport expected, DisseminatorReport actual){
+        if(!expected.getSelectedState().equals(actual.getSelectedState())
+                || !expected.getPositiveAMS().equals(actual.getPositiveAMS())
+                || !expected.getPositiveAMSFalsePositives().equals(actual.getPositiveAMSFalsePositives())
+                || expected.isPositiveAMD()!=actual.isPositiveAMD()
+                || expected.getAMDFalsePositive()!=actual.getAMDFalsePositive()
+                || expected.isWeighted()!=actual.isWeighted()
+                || expected.getWeight()!=actual.getWeight()){
+            System.out.println("Different disseminator report");
+            return;
+        }
+        checkValues(expected.getSelectedState(), actual.getSelectedState());
+    }
+
+    private static void checkAggregatorReport(AggregatorReport expected, AggregatorReport actual){
+        if(expected.isAcknowledged()!=actual.isAcknowledged()
+                || expected.getOutcome()!=actual.getOutcome()
+                || !expected.getAMSRemoval().equals(actual.getAMSRemoval())
+                || !expected.getAMSAddition().equals(actual.getAMSAddition())){
+            System.out.println("Different aggregator report");
+            return;
+        }
+        checkValues(expected.getAMSAddition(), actual.getAMSAddition());
+        checkValues(expected.getAMSRemoval(), actual.getAMSRemoval());
+    }
+
+    private static void checkValues(State expected, State actual){
+        if(expected instanceof ArithmeticState){
+            if(((ArithmeticState)expected).getValue()!=((ArithmeticState)actual).getValue()){
+                System.out.println("Different value: "+expected+" "+actual);
+            }
+        }
+        else if(expected instanceof ArithmeticListState){
+            List<ArithmeticState> expectedStates=((ArithmeticListState)expected).getArithmeticStates();
+            List<ArithmeticState> actualStates=((ArithmeticListState)actual).getArithmeticStates();
+            for(int i=0; i<expectedStates.size(); i++){
+                if(expectedStates.get(i).getValue()!=actualStates.get(i).getValue()){
+                    System.out.println("Different value ["+i+"]: "+expected+" "+actual);
+                    return;
+                }
+            }
+        }
+        else if(expected instanceof SparseListState){
+            SparseListState expectedState=(SparseListState)expected;
+            SparseListState actualState=(SparseListState)actual;
+            if(expectedState.getDimensions()!=actualState.getDimensions() ||
+                    expectedState.getNumberOfNonZeros()!=actualState.getNumberOfNonZeros()){
+                System.out.println("Different sparse state: "+expected+" "+actual);
+                return;
+            }
+            for(int k=0; k<expectedState.getNumberOfNonZeros(); k++){
+                if(expectedState.getIndex(k)!=actualState.getIndex(k) || expectedState.getValue(k)!=actualState.getValue(k)){
+                    System.out.println("Different sparse state ["+k+"]: "+expected+" "+actual);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -174,6 +174,22 @@ public class AggregationStrategy {
         this.outdatedNeighbors.offer(outdated);
     }
 
+    /**
+     * Moves an exploited neighbor to the outdated neighbors, e.g. when its
+     * aggregation has expired and the selected state has to be pushed again.
+     *
+     * @param sample the neighbor that became outdated
+     *
+     * @return true if the neighbor was exploited
+     */
+    public boolean updateOutdated(Finger sample){
+        if(this.exploitedNeighbors.remove(sample)){
+            this.outdatedNeighbors.offer(sample);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * @param strategy the strategy to set
      */
@@ -234,6 +250,20 @@ public class AggregationStrategy {
         return false;
     }
 
+    /**
+     * Removes and exports the neighbors of all the queues, e.g. for checking
+     * them again when the AMD and AMS bloom filters of a session change.
+     *
+     * @return the removed neighbors
+     */
+    public Collection<Finger> exportSamples(){
+        LinkedHashSet<Finger> samples=new LinkedHashSet<Finger>();
+        this.unexploitedNeighbors.drainTo(samples);
+        this.outdatedNeighbors.drainTo(samples);
+        this.exploitedNeighbors.drainTo(samples);
+        return samples;
+    }
+
     /**
      * Removes all the elements from the queues.
      */
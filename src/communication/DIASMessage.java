@@ -17,6 +17,9 @@
  */
 package communication;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import protopeer.Finger;
 import protopeer.network.Message;
 
@@ -24,13 +27,54 @@ import protopeer.network.Message;
  * A DIAS message defines:
  * 
  * 1. The type of message sent: PUSH, PULL_PUSH, PULL
- * 2. The aggregation epoch.
- * 3. The sender
+ * 2. The names of the aggregation sessions.
+ * 3. The aggregation epoch of every session.
+ * 4. The sender
+ *
+ * The reports of all the sessions of a peer are batched in one message, in
+ * arrays that are parallel to the names of the sessions.
+ *
+ * The fields are serialized in a compact binary form: the type as a byte, the
+ * number of sessions and the epochs as variable-length integers and the names
+ * of the sessions as UTF strings. The reports of the subclasses are encoded
+ * with the <code>ReportCodec</code>.
  *
  * @author Evangelos
  */
 public class DIASMessage extends Message{
-    public DIASMessType type;
-    public int aggregationEpoch;
-    public Finger sender;
+
+    private static final DIASMessType[] TYPES=DIASMessType.values();
+
+    public transient DIASMessType type;
+    public transient String[] sessions;
+    public transient int[] aggregationEpochs;
+    public transient Finger sender;
+
+    private void writeObject(ObjectOutputStream out) throws IOException{
+        out.defaultWriteObject();
+        out.writeByte(this.type.ordinal());
+        ReportCodec.writeVarInt(out, this.sessions.length);
+        for(int s=0; s<this.sessions.length; s++){
+            out.writeUTF(this.sessions[s]);
+            ReportCodec.writeVarInt(out, this.aggregationEpochs[s]);
+        }
+        out.writeObject(this.sender);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        in.defaultReadObject();
+        byte type=in.readByte();
+        if(type<0 || type>=TYPES.length){
+            throw new IOException("Unknown message type "+type);
+        }
+        this.type=TYPES[type];
+        int numOfSessions=ReportCodec.readVarInt(in);
+        this.sessions=new String[numOfSessions];
+        this.aggregationEpochs=new int[numOfSessions];
+        for(int s=0; s<numOfSessions; s++){
+            this.sessions[s]=in.readUTF();
+            this.aggregationEpochs[s]=ReportCodec.readVarInt(in);
+        }
+        this.sender=(Finger)in.readObject();
+    }
 }
@@ -18,20 +18,40 @@
 package communication;
 
 import consistency.AggregatorReport;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 
 /**
  * The pull message is the reply to a push message. A pull contains the aggregator
- * report with the result of the aggregation. 
+ * report with the result of the aggregation for every session of the push that
+ * is aggregated in the same aggregation epoch.
  *
  * @author Evangelos
  */
 public class Pull extends DIASMessage{
 
-    public HashMap<AggregatorReport, Object> report;
+    public transient AggregatorReport[] reports;
 
-    public Pull(int session){
+    public Pull(String[] sessions, int[] aggregationEpochs){
         this.type=DIASMessType.PULL;
-        this.aggregationEpoch=session;
+        this.sessions=sessions;
+        this.aggregationEpochs=aggregationEpochs;
+        this.reports=new AggregatorReport[sessions.length];
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException{
+        out.defaultWriteObject();
+        for(AggregatorReport report:this.reports){
+            ReportCodec.writeAggregatorReport(out, report);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        in.defaultReadObject();
+        this.reports=new AggregatorReport[this.sessions.length];
+        for(int s=0; s<this.reports.length; s++){
+            this.reports[s]=ReportCodec.readAggregatorReport(in);
+        }
     }
 }
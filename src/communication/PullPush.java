@@ -27,8 +27,8 @@ public class PullPush extends Pull{
 
     public Push push;
 
-    public PullPush(int session){
-        super(session);
+    public PullPush(String[] sessions, int[] aggregationEpochs){
+        super(sessions, aggregationEpochs);
         this.type=DIASMessType.PULL_PUSH;
     }
 }
@@ -18,21 +18,40 @@
 package communication;
 
 import consistency.DisseminatorReport;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 
 /**
  * The push message is the initiator of an aggregation. It is sent by the
- * disseminator and contains the disseminator report. A push must trigger a pull
- * message.
+ * disseminator and contains a disseminator report for every session. A push
+ * must trigger a pull message.
  *
  * @author Evangelos
  */
 public class Push extends DIASMessage{
 
-    public HashMap<DisseminatorReport, Object> report;
+    public transient DisseminatorReport[] reports;
 
-    public Push(int session){
+    public Push(String[] sessions, int[] aggregationEpochs){
         this.type=DIASMessType.PUSH;
-        this.aggregationEpoch=session;
+        this.sessions=sessions;
+        this.aggregationEpochs=aggregationEpochs;
+        this.reports=new DisseminatorReport[sessions.length];
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException{
+        out.defaultWriteObject();
+        for(DisseminatorReport report:this.reports){
+            ReportCodec.writeDisseminatorReport(out, report);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        in.defaultReadObject();
+        this.reports=new DisseminatorReport[this.sessions.length];
+        for(int s=0; s<this.reports.length; s++){
+            this.reports[s]=ReportCodec.readDisseminatorReport(in);
+        }
     }
 }
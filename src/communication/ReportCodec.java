@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package communication;
+
+import aggregation.SparseListState;
+import consistency.AggregationOutcome;
+import consistency.AggregatorReport;
+import consistency.DisseminatorReport;
+import dsutil.generic.state.ArithmeticListState;
+import dsutil.generic.state.ArithmeticState;
+import dsutil.generic.state.State;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A compact binary codec of the disseminator and aggregator reports that the
+ * DIAS messages carry instead of their default serialization. A disseminator
+ * report is written as a byte of flags, the positive AMD membership and if it
+ * is weighted, followed by:
+ *
+ * the selected state
+ * the number of positive AMS states and the states. The selected state is
+ * written as a reference to it.
+ * the number of AMS false positive probabilities and for every entry the
+ * state identifier as two longs and the probability as a float.
+ * the AMD false positive probability as a float
+ * the weight as a double, if it is weighted
+ *
+ * An aggregator report is written as the acknowledgment as a boolean, the
+ * ordinal of the outcome as a byte, -1 if it is null, and the AMS removal and
+ * addition states.
+ *
+ * A state is written as a tag of its type and its identifier as two longs,
+ * followed by the value of an arithmetic state, the values of an arithmetic
+ * list state or the indices and non-zero values of a sparse list state. The
+ * identifiers of the arithmetic states of a list are not written, as only
+ * their values are aggregated. Other types of states and states with
+ * properties are written with their default serialization. Counts and indices
+ * are written as variable-length integers of seven bits per byte.
+ *
+ * Decoding never trusts a count: counts above MAX_COUNT are rejected and the
+ * collections grow with the elements actually read, so a corrupt or forged
+ * count fails at the end of the input instead of allocating its size. Any
+ * malformed report is reported as an IOException.
+ *
+ * @author Evangelos
+ */
+public final class ReportCodec {
+
+    /**
+     * The maximum number of elements of a decoded collection or of dimensions
+     * of a decoded sparse list state
+     */
+    public static final int MAX_COUNT=1<<24;
+
+    private static final int INITIAL_CAPACITY=64;
+
+    private static final byte NULL_STATE=0;
+    private static final byte ARITHMETIC_STATE=1;
+    private static final byte EMPTY_ARITHMETIC_STATE=2;
+    private static final byte ARITHMETIC_LIST_STATE=3;
+    private static final byte SPARSE_LIST_STATE=4;
+    private static final byte SELECTED_STATE=5;
+    private static final byte SERIALIZED_STATE=6;
+
+    private static final int POSITIVE_AMD=1;
+    private static final int WEIGHTED=2;
+
+    private static final AggregationOutcome[] OUTCOMES=AggregationOutcome.values();
+
+    private ReportCodec(){
+    }
+
+    /**
+     * Writes a disseminator report
+     *
+     * @param out the output
+     * @param report the disseminator report
+     */
+    public static void writeDisseminatorReport(ObjectOutput out, DisseminatorReport report) throws IOException{
+        int flags=0;
+        if(report.isPositiveAMD()){
+            flags|=POSITIVE_AMD;
+        }
+        if(report.isWeighted()){
+            flags|=WEIGHTED;
+        }
+        out.writeByte(flags);
+        State selectedState=report.getSelectedState();
+        writeState(out, selectedState, null);
+        Set<State> states=report.getPositiveAMS();
+        writeVarInt(out, states.size());
+        for(State state:states){
+            writeState(out, state, selectedState);
+        }
+        Map<UUID, Double> falsePositives=report.getPositiveAMSFalsePositives();
+        writeVarInt(out, falsePositives.size());
+        for(Map.Entry<UUID, Double> entry:falsePositives.entrySet()){
+            UUID stateId=entry.getKey();
+            out.writeLong(stateId.getMostSignificantBits());
+            out.writeLong(stateId.getLeastSignificantBits());
+            out.writeFloat(entry.getValue().floatValue());
+        }
+        out.writeFloat((float)report.getAMDFalsePositive());
+        if(report.isWeighted()){
+            out.writeDouble(report.getWeight());
+        }
+    }
+
+    /**
+     * Reads a disseminator report
+     *
+     * @param in the input
+     * @return the disseminator report
+     */
+    public static DisseminatorReport readDisseminatorReport(ObjectInput in) throws IOException, ClassNotFoundException{
+        int flags=in.readByte();
+        if((flags&~(POSITIVE_AMD|WEIGHTED))!=0){
+            throw new IOException("Unknown disseminator report flags "+flags);
+        }
+        State selectedState=readState(in, null);
+        int numOfStates=readCount(in, MAX_COUNT);
+        HashSet<State> states=new HashSet<State>();
+        for(int i=0; i<numOfStates; i++){
+            states.add(readState(in, selectedState));
+        }
+        int numOfEntries=readCount(in, MAX_COUNT);
+        HashMap<UUID, Double> falsePositives=new HashMap<UUID, Double>();
+        for(int i=0; i<numOfEntries; i++){
+            UUID stateId=new UUID(in.readLong(), in.readLong());
+            falsePositives.put(stateId, (double)in.readFloat());
+        }
+        double AMDFalsePositive=in.readFloat();
+        Double weight=(flags&WEIGHTED)==0 ? null : Double.valueOf(in.readDouble());
+        return new DisseminatorReport(selectedState, states, falsePositives, (flags&POSITIVE_AMD)!=0, AMDFalsePositive, weight);
+    }
+
+    /**
+     * Writes an aggregator report
+     *
+     * @param out the output
+     * @param report the aggregator report
+     */
+    public static void writeAggregatorReport(ObjectOutput out, AggregatorReport report) throws IOException{
+        out.writeBoolean(report.isAcknowledged());
+        AggregationOutcome outcome=report.getOutcome();
+        out.writeByte(outcome==null ? -1 : outcome.ordinal());
+        writeState(out, report.getAMSRemoval(), null);
+        writeState(out, report.getAMSAddition(), null);
+    }
+
+    /**
+     * Reads an aggregator report
+     *
+     * @param in the input
+     * @return the aggregator report
+     */
+    public static AggregatorReport readAggregatorReport(ObjectInput in) throws IOException, ClassNotFoundException{
+        boolean ack=in.readBoolean();
+        byte outcome=in.readByte();
+        if(outcome>=OUTCOMES.length || outcome<-1){
+            throw new IOException("Unknown aggregation outcome "+outcome);
+        }
+        State AMSRemoval=readState(in, null);
+        State AMSAddition=readState(in, null);
+        return new AggregatorReport(ack, outcome<0 ? null : OUTCOMES[outcome], AMSRemoval, AMSAddition);
+    }
+
+    /**
+     * Writes a state with its type and identifier
+     *
+     * @param out the output
+     * @param state the state, which can be null
+     * @param selectedState the state that is written as a reference or null
+     */
+    public static void writeState(ObjectOutput out, State state, State selectedState) throws IOException{
+        if(state==null){
+            out.writeByte(NULL_STATE);
+            return;
+        }
+        if(selectedState!=null && state.equals(selectedState)){
+            out.writeByte(SELECTED_STATE);
+            return;
+        }
+        Class<?> type=state.getClass();
+        if(hasOtherProperties(state)){
+            out.writeByte(SERIALIZED_STATE);
+            out.writeObject(state);
+        }
+        else if(type==ArithmeticState.class){
+            ArithmeticState arithmeticState=(ArithmeticState)state;
+            if(arithmeticState.containsValue()){
+                out.writeByte(ARITHMETIC_STATE);
+                writeStateId(out, state);
+                out.writeDouble(arithmeticState.getValue());
+            }
+            else{
+                out.writeByte(EMPTY_ARITHMETIC_STATE);
+                writeStateId(out, state);
+            }
+        }
+        else if(type==ArithmeticListState.class){
+            List<ArithmeticState> states=((ArithmeticListState)state).getArithmeticStates();
+            out.writeByte(ARITHMETIC_LIST_STATE);
+            writeStateId(out, state);
+            writeVarInt(out, states.size());
+            for(ArithmeticState arithmeticState:states){
+                out.writeDouble(arithmeticState.containsValue() ? arithmeticState.getValue() : Double.NaN);
+            }
+        }
+        else if(type==SparseListState.class){
+            SparseListState sparseState=(SparseListState)state;
+            int nonZeros=sparseState.getNumberOfNonZeros();
+            out.writeByte(SPARSE_LIST_STATE);
+            writeStateId(out, state);
+            writeVarInt(out, sparseState.getDimensions());
+            writeVarInt(out, nonZeros);
+            int index=0;
+            for(int k=0; k<nonZeros; k++){
+                writeVarInt(out, sparseState.getIndex(k)-index);
+                index=sparseState.getIndex(k);
+            }
+            for(int k=0; k<nonZeros; k++){
+                out.writeDouble(sparseState.getValue(k));
+            }
+        }
+        else{
+            out.writeByte(SERIALIZED_STATE);
+            out.writeObject(state);
+        }
+    }
+
+    /**
+     * Reads a state
+     *
+     * @param in the input
+     * @param selectedState the state that is read from a reference or null
+     * @return the state, which can be null
+     */
+    public static State readState(ObjectInput in, State selectedState) throws IOException, ClassNotFoundException{
+        byte tag=in.readByte();
+        switch(tag){
+            case NULL_STATE:
+                return null;
+            case SELECTED_STATE:
+                return selectedState;
+            case ARITHMETIC_STATE:
+                ArithmeticState arithmeticState=new ArithmeticState(readStateId(in));
+                arithmeticState.setValue(in.readDouble());
+                return arithmeticState;
+            case EMPTY_ARITHMETIC_STATE:
+                return new ArithmeticState(readStateId(in));
+            case ARITHMETIC_LIST_STATE:
+                ArithmeticListState listState=new ArithmeticListState(readStateId(in));
+                int size=readCount(in, MAX_COUNT);
+                List<ArithmeticState> states=new ArrayList<ArithmeticState>(Math.min(size, INITIAL_CAPACITY));
+                for(int i=0; i<size; i++){
+                    double value=in.readDouble();
+                    states.add(Double.isNaN(value) ? new ArithmeticState() : new ArithmeticState(value));
+                }
+                listState.setArithmeticStates(states);
+                return listState;
+            case SPARSE_LIST_STATE:
+                UUID stateId=readStateId(in);
+                int dimensions=readCount(in, MAX_COUNT);
+                int nonZeros=readCount(in, dimensions);
+                int[] indices=new int[Math.min(nonZeros, INITIAL_CAPACITY)];
+                int index=0;
+                for(int k=0; k<nonZeros; k++){
+                    int delta=readCount(in, dimensions);
+                    if((k>0 && delta==0) || delta>=dimensions-index){
+                        throw new IOException("Sparse list index out of order or beyond "+dimensions+" dimensions");
+                    }
+                    index+=delta;
+                    if(k==indices.length){
+                        int[] grown=new int[Math.min(nonZeros, 2*k)];
+                        System.arraycopy(indices, 0, grown, 0, k);
+                        indices=grown;
+                    }
+                    indices[k]=index;
+                }
+                double[] values=new double[nonZeros];
+                for(int k=0; k<nonZeros; k++){
+                    values[k]=in.readDouble();
+                }
+                try{
+                    return new SparseListState(stateId, dimensions, indices, values);
+                }
+                catch(IllegalArgumentException e){
+                    throw new IOException("Malformed sparse list state: "+e.getMessage());
+                }
+            case SERIALIZED_STATE:
+                Object state=in.readObject();
+                if(state!=null && !(state instanceof State)){
+                    throw new IOException("Not a state: "+state.getClass().getName());
+                }
+                return (State)state;
+            default:
+                throw new IOException("Unknown state type "+tag);
+        }
+    }
+
+    /**
+     * Checks if a state has properties other than the value of an arithmetic
+     * state or arithmetic list state, which the binary form does not write.
+     */
+    private static boolean hasOtherProperties(State state){
+        int properties=state.getProperties().size();
+        if(state.getClass()==ArithmeticState.class){
+            return properties>(((ArithmeticState)state).containsValue() ? 1 : 0);
+        }
+        if(state.getClass()==ArithmeticListState.class){
+            return properties>(((ArithmeticListState)state).containsArithmeticList() ? 1 : 0);
+        }
+        return properties>0;
+    }
+
+    private static void writeStateId(ObjectOutput out, State state) throws IOException{
+        UUID stateId=state.getStateId();
+        out.writeLong(stateId.getMostSignificantBits());
+        out.writeLong(stateId.getLeastSignificantBits());
+    }
+
+    private static UUID readStateId(ObjectInput in) throws IOException{
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Writes a non-negative integer in bytes of seven bits, the least
+     * significant first, with the highest bit set if more bytes follow.
+     *
+     * @param out the output
+     * @param value the non-negative integer
+     */
+    public static void writeVarInt(ObjectOutput out, int value) throws IOException{
+        while((value&~0x7F)!=0){
+            out.writeByte((value&0x7F)|0x80);
+            value>>>=7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a non-negative integer written by <code>writeVarInt</code>
+     *
+     * @param in the input
+     * @return the non-negative integer
+     */
+    public static int readVarInt(ObjectInput in) throws IOException{
+        int value=0;
+        for(int shift=0; shift<32; shift+=7){
+            int b=in.readByte();
+            value|=(b&0x7F)<<shift;
+            if((b&0x80)==0){
+                if(value<0){
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Reads a count written by <code>writeVarInt</code> and checks that it does
+     * not exceed a maximum
+     *
+     * @param in the input
+     * @param max the maximum count
+     * @return the count
+     */
+    private static int readCount(ObjectInput in, int max) throws IOException{
+        int count=readVarInt(in);
+        if(count>max){
+            throw new IOException("Count "+count+" exceeds the maximum "+max);
+        }
+        return count;
+    }
+}
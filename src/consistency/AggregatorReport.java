@@ -17,6 +17,9 @@
  */
 package consistency;
 
+import dsutil.generic.state.State;
+import java.io.Serializable;
+
 /**
  * The aggregator report indicated the following:
  * 
@@ -34,9 +37,43 @@ package consistency;
  *
  * @author Evangelos
  */
-public enum AggregatorReport {
-    ACK,
-    OUTCOME,
-    AMS_REMOVAL,
-    AMS_ADDITION
+public final class AggregatorReport implements Serializable {
+
+    private static final long serialVersionUID=1L;
+
+    private final boolean ack;
+    private final AggregationOutcome outcome;
+    private final State AMSRemoval;
+    private final State AMSAddition;
+
+    /**
+     * Creates an aggregator report
+     *
+     * @param ack the acknowledgment of the aggregation
+     * @param outcome the consistency outcome or null
+     * @param AMSRemoval the removed AMS membership or null
+     * @param AMSAddition the added AMS membership or null
+     */
+    public AggregatorReport(boolean ack, AggregationOutcome outcome, State AMSRemoval, State AMSAddition){
+        this.ack=ack;
+        this.outcome=outcome;
+        this.AMSRemoval=AMSRemoval;
+        this.AMSAddition=AMSAddition;
+    }
+
+    public boolean isAcknowledged(){
+        return this.ack;
+    }
+
+    public AggregationOutcome getOutcome(){
+        return this.outcome;
+    }
+
+    public State getAMSRemoval(){
+        return this.AMSRemoval;
+    }
+
+    public State getAMSAddition(){
+        return this.AMSAddition;
+    }
 }
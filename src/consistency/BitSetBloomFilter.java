@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A simple bloom filter over a flat bit vector of longs. It follows the
+ * parameterization of the bloomfilter library: m is the width of the hash and
+ * the bit vector has 2^m bits, k is the number of hash functions.
+ *
+ * The k indices of a member are derived from its digest by double hashing,
+ * therefore the filter does not allocate on add and contains.
+ *
+ * @author Evangelos
+ */
+public class BitSetBloomFilter implements MembershipFilter {
+
+    private final long[] bits;
+    private final int mask;
+    private final int k;
+
+    /**
+     * Initializes an empty bloom filter
+     *
+     * @param m the hash width, the filter has 2^m bits
+     * @param k the number of hash functions
+     */
+    public BitSetBloomFilter(int m, int k){
+        int size=1<<m;
+        this.bits=new long[Math.max(1, size>>>6)];
+        this.mask=size-1;
+        this.k=k;
+    }
+
+    public void add(long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        for(int i=0; i<k; i++){
+            int index=(h1+i*h2)&mask;
+            bits[index>>>6]|=1L<<index;
+        }
+    }
+
+    public boolean contains(long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        for(int i=0; i<k; i++){
+            int index=(h1+i*h2)&mask;
+            if((bits[index>>>6]&(1L<<index))==0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removals are not supported by simple bloom filters.
+     *
+     * @return false
+     */
+    public boolean remove(long digest){
+        return false;
+    }
+
+    public void clear(){
+        Arrays.fill(bits, 0L);
+    }
+
+    public double getFalsePositiveProbability(int n){
+        double m=mask+1.0;
+        return Math.pow((1-Math.exp(-k*n/m)), k);
+    }
+
+    /**
+     * @return the number of bits of the filter
+     */
+    public int size(){
+        return mask+1;
+    }
+
+    /**
+     * @return the number of hash functions
+     */
+    public int getK(){
+        return k;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A set of simple bloom filters with the same parameters stored as a
+ * transposed bit matrix. Every filter is a column and every position of the
+ * filters is a row. A row holds the bit of this position for all the filters.
+ *
+ * The disseminator stores its AMS bloom filters in this layout, one column for
+ * every possible state. The positive AMS memberships of an aggregator are then
+ * found in a single pass of k probes: the rows of the k positions are ANDed
+ * and the result is a bitmask with the columns, i.e. the states, that contain
+ * the aggregator.
+ *
+ * Removals are not supported, as in simple bloom filters.
+ *
+ * @author Evangelos
+ */
+public class BitSlicedBloomFilterMatrix {
+
+    private final long[] rows;
+    private final int words;
+    private final int columns;
+    private final int mask;
+    private final int k;
+    private final MembershipFilter[] filters;
+
+    /**
+     * Initializes an empty matrix
+     *
+     * @param m the hash width, every filter has 2^m bits
+     * @param k the number of hash functions
+     * @param columns the number of filters
+     */
+    public BitSlicedBloomFilterMatrix(int m, int k, int columns){
+        int size=1<<m;
+        this.words=Math.max(1, (columns+63)>>>6);
+        this.rows=new long[size*words];
+        this.columns=columns;
+        this.mask=size-1;
+        this.k=k;
+        this.filters=new MembershipFilter[columns];
+    }
+
+    /**
+     * Adds a membership in a filter of the matrix
+     *
+     * @param column the filter
+     * @param digest the digest of the member
+     */
+    public void add(int column, long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        int word=column>>>6;
+        long bit=1L<<column;
+        for(int i=0; i<k; i++){
+            int index=(h1+i*h2)&mask;
+            rows[index*words+word]|=bit;
+        }
+    }
+
+    /**
+     * Checks a membership in a filter of the matrix
+     *
+     * @param column the filter
+     * @param digest the digest of the member
+     *
+     * @return true if the member is contained in the filter
+     */
+    public boolean contains(int column, long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        int word=column>>>6;
+        long bit=1L<<column;
+        for(int i=0; i<k; i++){
+            int index=(h1+i*h2)&mask;
+            if((rows[index*words+word]&bit)==0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks a membership in all the filters of the matrix at once.
+     *
+     * @param digest the digest of the member
+     * @param result the bitmask of the filters that contain the member. It
+     * must have at least <code>getWords()</code> longs.
+     *
+     * @return true if at least one filter contains the member
+     */
+    public boolean contains(long digest, long[] result){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        int offset=(h1&mask)*words;
+        System.arraycopy(rows, offset, result, 0, words);
+        for(int i=1; i<k; i++){
+            offset=((h1+i*h2)&mask)*words;
+            long any=0L;
+            for(int w=0; w<words; w++){
+                result[w]&=rows[offset+w];
+                any|=result[w];
+            }
+            if(any==0L){
+                return false;
+            }
+        }
+        for(int w=0; w<words; w++){
+            if(result[w]!=0L){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the memberships of a filter
+     *
+     * @param column the filter
+     */
+    public void clear(int column){
+        int word=column>>>6;
+        long bit=~(1L<<column);
+        for(int index=word; index<rows.length; index+=words){
+            rows[index]&=bit;
+        }
+    }
+
+    /**
+     * Removes the memberships of all the filters
+     */
+    public void clear(){
+        Arrays.fill(rows, 0L);
+    }
+
+    /**
+     * Calculates the false positive probability of a filter of the matrix
+     *
+     * @param n the number of elements added in the filter
+     *
+     * @return the false positive probability
+     */
+    public double getFalsePositiveProbability(int n){
+        double m=mask+1.0;
+        return Math.pow((1-Math.exp(-k*n/m)), k);
+    }
+
+    /**
+     * @return the number of longs of a row and of a result bitmask
+     */
+    public int getWords(){
+        return words;
+    }
+
+    /**
+     * @return the number of filters
+     */
+    public int getColumns(){
+        return columns;
+    }
+
+    /**
+     * Provides a filter of the matrix as a membership filter
+     *
+     * @param column the filter
+     *
+     * @return a view of the filter
+     */
+    public MembershipFilter getFilter(int column){
+        if(filters[column]==null){
+            filters[column]=new Column(column);
+        }
+        return filters[column];
+    }
+
+    /**
+     * A single filter of the matrix
+     */
+    private class Column implements MembershipFilter {
+
+        private final int column;
+
+        private Column(int column){
+            this.column=column;
+        }
+
+        public void add(long digest){
+            BitSlicedBloomFilterMatrix.this.add(column, digest);
+        }
+
+        public boolean contains(long digest){
+            return BitSlicedBloomFilterMatrix.this.contains(column, digest);
+        }
+
+        public boolean remove(long digest){
+            return false;
+        }
+
+        public void clear(){
+            BitSlicedBloomFilterMatrix.this.clear(column);
+        }
+
+        public double getFalsePositiveProbability(int n){
+            return BitSlicedBloomFilterMatrix.this.getFalsePositiveProbability(n);
+        }
+    }
+}
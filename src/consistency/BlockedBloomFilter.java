@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A simple bloom filter split in blocks of 512 bits, the size of a cache line.
+ * The digest of a member selects one block and all the k bits of the member
+ * are set within this block. The positions within the block are the top 9 bits
+ * of the digest multiplied successively by an odd constant, since double
+ * hashing over 512 positions correlates the k bits. A check touches a single
+ * block instead of k random positions of the filter.
+ *
+ * The blocks are not equally loaded and therefore the false positive
+ * probability is higher than the one of a simple bloom filter with the same
+ * size. It is calculated as proposed in:
+ *
+ * F. Putze, P. Sanders, J. Singler, Cache-, Hash- and Space-Efficient Bloom
+ * Filters, WEA 2007
+ *
+ * FP=SUM_i Poisson(i; nB/m) * (1-(1-1/B)^(ik))^k
+ *
+ * where B is the number of bits of a block.
+ *
+ * @author Evangelos
+ */
+public class BlockedBloomFilter implements MembershipFilter {
+
+    private final static int BLOCK_BITS=512;
+    private final static int BLOCK_WORDS=BLOCK_BITS>>>6;
+    private final static long GOLDEN_GAMMA=0x9e3779b97f4a7c15L;
+
+    private final long[] bits;
+    private final int blockMask;
+    private final int k;
+
+    /**
+     * Initializes an empty blocked bloom filter
+     *
+     * @param m the hash width, the filter has 2^m bits and at least one block
+     * @param k the number of hash functions
+     */
+    public BlockedBloomFilter(int m, int k){
+        int blocks=Math.max(1, (1<<m)/BLOCK_BITS);
+        this.bits=new long[blocks*BLOCK_WORDS];
+        this.blockMask=blocks-1;
+        this.k=k;
+    }
+
+    public void add(long digest){
+        int offset=(MembershipDigest.h1(digest)&blockMask)*BLOCK_WORDS;
+        long h=digest;
+        for(int i=0; i<k; i++){
+            h*=GOLDEN_GAMMA;
+            int index=(int)(h>>>55);
+            bits[offset+(index>>>6)]|=1L<<index;
+        }
+    }
+
+    public boolean contains(long digest){
+        int offset=(MembershipDigest.h1(digest)&blockMask)*BLOCK_WORDS;
+        long h=digest;
+        for(int i=0; i<k; i++){
+            h*=GOLDEN_GAMMA;
+            int index=(int)(h>>>55);
+            if((bits[offset+(index>>>6)]&(1L<<index))==0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removals are not supported by blocked bloom filters.
+     *
+     * @return false
+     */
+    public boolean remove(long digest){
+        return false;
+    }
+
+    public void clear(){
+        Arrays.fill(bits, 0L);
+    }
+
+    public double getFalsePositiveProbability(int n){
+        return getFalsePositiveProbability(n, BLOCK_BITS, bits.length*64.0, k);
+    }
+
+    /**
+     * Calculates the false positive probability of a filter of blocks with the
+     * Poisson distribution of the members over the blocks.
+     *
+     * @param n the number of elements added in the filter
+     * @param blockSize the number of positions of a block
+     * @param size the number of positions of the filter
+     * @param k the number of hash functions
+     *
+     * @return the false positive probability
+     */
+    static double getFalsePositiveProbability(int n, int blockSize, double size, int k){
+        if(n==0){
+            return 0.0;
+        }
+        double lambda=n*(double)blockSize/size;
+        double logNotSet=k*Math.log1p(-1.0/blockSize);
+        int max=(int)Math.ceil(lambda+12*Math.sqrt(lambda)+20);
+        double logPoisson=-lambda;
+        double logLambda=Math.log(lambda);
+        double p=0.0;
+        for(int i=0; i<=max; i++){
+            if(i>0){
+                logPoisson+=logLambda-Math.log(i);
+            }
+            double inner=Math.pow(-Math.expm1(i*logNotSet), k);
+            p+=Math.exp(logPoisson)*inner;
+        }
+        return Math.min(1.0, p);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A counting bloom filter with 4-bit counters split in blocks of 128 counters,
+ * the 64 bytes of a cache line. The digest of a member selects one block and
+ * all the k counters of the member are within this block, as in
+ * <code>BlockedBloomFilter</code>. The counters saturate at 15 like the ones of
+ * <code>NibbleCountingBloomFilter</code>, so that removals never cause false
+ * negatives. It is the blocked type of the SMA bloom filter, which must
+ * remove the replaced states.
+ *
+ * The false positive probability is the one of a blocked bloom filter with
+ * blocks of 128 positions.
+ *
+ * @author Evangelos
+ */
+public class BlockedCountingBloomFilter implements MembershipFilter {
+
+    private final static int BLOCK_COUNTERS=128;
+    private final static long GOLDEN_GAMMA=0x9e3779b97f4a7c15L;
+
+    private final long[] counters;
+    private final int blockMask;
+    private final int k;
+    private int overflows;
+
+    /**
+     * Initializes an empty blocked counting bloom filter
+     *
+     * @param m the hash width, the filter has 2^m counters and at least one
+     * block
+     * @param k the number of hash functions
+     */
+    public BlockedCountingBloomFilter(int m, int k){
+        int blocks=Math.max(1, (1<<m)/BLOCK_COUNTERS);
+        this.counters=new long[blocks*BLOCK_COUNTERS>>>4];
+        this.blockMask=blocks-1;
+        this.k=k;
+        this.overflows=0;
+    }
+
+    public void add(long digest){
+        int offset=(MembershipDigest.h1(digest)&blockMask)*BLOCK_COUNTERS;
+        long h=digest;
+        for(int i=0; i<k; i++){
+            h*=GOLDEN_GAMMA;
+            if(!NibbleCountingBloomFilter.increment(counters, offset+(int)(h>>>57))){
+                overflows++;
+            }
+        }
+    }
+
+    public boolean contains(long digest){
+        int offset=(MembershipDigest.h1(digest)&blockMask)*BLOCK_COUNTERS;
+        long h=digest;
+        for(int i=0; i<k; i++){
+            h*=GOLDEN_GAMMA;
+            if(NibbleCountingBloomFilter.isZero(counters, offset+(int)(h>>>57))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decrements the counters of a member that is contained in the filter.
+     * Saturated counters are not decremented.
+     *
+     * @return true
+     */
+    public boolean remove(long digest){
+        int offset=(MembershipDigest.h1(digest)&blockMask)*BLOCK_COUNTERS;
+        long h=digest;
+        for(int i=0; i<k; i++){
+            h*=GOLDEN_GAMMA;
+            NibbleCountingBloomFilter.decrement(counters, offset+(int)(h>>>57));
+        }
+        return true;
+    }
+
+    public void clear(){
+        Arrays.fill(counters, 0L);
+        this.overflows=0;
+    }
+
+    public double getFalsePositiveProbability(int n){
+        return BlockedBloomFilter.getFalsePositiveProbability(n, BLOCK_COUNTERS, counters.length*16.0, k);
+    }
+
+    /**
+     * @return the number of increments that found a saturated counter since
+     * the filter was created or cleared
+     */
+    public int getOverflows(){
+        return overflows;
+    }
+}
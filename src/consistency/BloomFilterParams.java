@@ -21,7 +21,7 @@ package consistency;
  * Four types of bloom filters are defined in DIAS:
  * 
  * 1. Aggregator Membership of a State (AMS)
- *      Simple or counting
+ *      Simple, counting, bit-sliced, blocked or cuckoo
  * 
  * 2. Aggregator Membership in a Disseminator (AMD)
  *      Simple
@@ -30,11 +30,11 @@ package consistency;
  *      Simple
  * 
  * 4. State membership in an Aggregate (SMA)
- *      Counting
+ *      Counting or cuckoo
  * 
  * All the bloom filters of DIAS are parameterized the 3 paramerers:
  * 
- *  a. The hash type: Simple, Double, Triple
+ *  a. The hash type: Simple, Double, Triple or DIAS (MembershipDigest.DIAS_HASH)
  *  b. m: the size of the vector
  *  c. k: the number of hash functions
  * 
@@ -42,6 +42,22 @@ package consistency;
  * them. The number of items that are about to be added must be estimated for an
  * effective choice of these parameters.
  *
+ * The SMA_TYPE is optional and the SMA bloom filter is counting by default.
+ * The SMA must remove replaced states, so a blocked SMA is blocked counting
+ * and the simple and bit-sliced types are rejected.
+ *
+ * The optional AMS_TARGET_FP, AMD_TARGET_FP, DMA_TARGET_FP and SMA_TARGET_FP
+ * make the respective bloom filters scalable: a filter grows by adding new
+ * slices so that its probability of false positives remains below the given
+ * bound. The bit-sliced AMS bloom filters are not scalable.
+ *
+ * The optional SIZING_FP is a target probability of false positives. If it is
+ * given, m and k are computed by <code>BloomFilterSizing</code> and the bloom
+ * filters are resized at every aggregation epoch based on the counters of the
+ * previous epoch. SIZING_AGGREGATORS and SIZING_DISSEMINATORS are the
+ * numbers of aggregators and disseminators of the latest sizing, which bound
+ * how much the next resizing shrinks the filters.
+ *
  *
  * @author Evangelos
  */
@@ -59,7 +75,17 @@ public enum BloomFilterParams {
     AMD_M,
     AMD_K,
 
+    SMA_TYPE,
     SMA_HASH_TYPE,
     SMA_M,
     SMA_K,
+
+    AMS_TARGET_FP,
+    AMD_TARGET_FP,
+    DMA_TARGET_FP,
+    SMA_TARGET_FP,
+
+    SIZING_FP,
+    SIZING_AGGREGATORS,
+    SIZING_DISSEMINATORS,
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Map;
+
+/**
+ * Computes the parameters m and k of the bloom filters of DIAS given the
+ * number of elements that are expected in every filter and a target
+ * probability of false positives. The optimal size of a bloom filter for n
+ * elements and false positive probability p is:
+ *
+ * bits=-n*ln(p)/ln(2)^2 and k=-log2(p)
+ *
+ * The size is rounded up to the next power of two, as the hash width m defines
+ * a filter of 2^m positions.
+ *
+ * The filters are sized per role:
+ *
+ * AMD: the aggregators of the disseminator, at most N
+ * AMS: the aggregators of every possible state, at most N. A disseminator
+ * checks an aggregator against all the AMSs, therefore every AMS is sized for
+ * the target divided by the number of possible states.
+ * DMA: the disseminators of the aggregator, at most N
+ * SMA: the states counted by the aggregator, one per disseminator
+ *
+ * At every aggregation epoch the filters are resized for the counters observed
+ * in the previous epoch with a headroom. A filter grows immediately. It is
+ * sized for at least MIN_N elements and for at least MAX_SHRINK of the number
+ * of its latest sizing, so that a short epoch with few aggregations only
+ * shrinks the filters gradually, and it shrinks only if its hash width drops
+ * by SHRINK_HYSTERESIS, so that noisy counters do not resize the filters at
+ * every epoch.
+ *
+ * @author Evangelos
+ */
+public final class BloomFilterSizing {
+
+    public final static int MIN_M=6;
+    public final static int MAX_M=24;
+    public final static int MAX_K=32;
+    public final static int MIN_N=16;
+    public final static double HEADROOM=1.5;
+    public final static double MAX_SHRINK=0.5;
+    public final static int SHRINK_HYSTERESIS=2;
+
+    private BloomFilterSizing(){
+    }
+
+    /**
+     * Computes the hash width of a bloom filter
+     *
+     * @param n the number of elements in the filter
+     * @param targetFP the target false positive probability
+     *
+     * @return the hash width m, the filter has 2^m positions
+     */
+    public static int getM(int n, double targetFP){
+        double bits=-Math.max(1, n)*Math.log(targetFP)/(Math.log(2)*Math.log(2));
+        int m=(int)Math.ceil(Math.log(bits)/Math.log(2));
+        return Math.min(MAX_M, Math.max(MIN_M, m));
+    }
+
+    /**
+     * Computes the number of hash functions of a bloom filter
+     *
+     * @param targetFP the target false positive probability
+     *
+     * @return the number of hash functions k
+     */
+    public static int getK(double targetFP){
+        int k=(int)Math.ceil(-Math.log(targetFP)/Math.log(2));
+        return Math.min(MAX_K, Math.max(1, k));
+    }
+
+    /**
+     * Sets m and k of all the bloom filters for the expected number of peers
+     *
+     * @param parameters the bloom filter parameters to update
+     * @param n the expected number of peers
+     * @param numOfStates the number of possible states of a peer
+     * @param targetFP the target false positive probability
+     */
+    public static void size(Map<BloomFilterParams, Object> parameters, int n, int numOfStates, double targetFP){
+        set(parameters, n, n, numOfStates, targetFP, false);
+    }
+
+    /**
+     * Sets m and k of the bloom filters of the disseminator for the observed
+     * number of aggregators and of the aggregator for the observed number of
+     * disseminators. The observed numbers are increased by the headroom and
+     * they are not lower than MIN_N and MAX_SHRINK of the numbers of the
+     * latest sizing. The filters do not shrink within the hysteresis.
+     *
+     * @param parameters the bloom filter parameters of the previous epoch to
+     * update
+     * @param aggregators the number of aggregators, e.g. the AMD counter
+     * @param disseminators the number of disseminators, e.g. the DMA counter
+     * @param numOfStates the number of possible states of a peer
+     * @param targetFP the target false positive probability
+     */
+    public static void resize(Map<BloomFilterParams, Object> parameters, int aggregators, int disseminators, int numOfStates, double targetFP){
+        aggregators=getN(parameters, BloomFilterParams.SIZING_AGGREGATORS, aggregators);
+        disseminators=getN(parameters, BloomFilterParams.SIZING_DISSEMINATORS, disseminators);
+        set(parameters, aggregators, disseminators, numOfStates, targetFP, true);
+    }
+
+    /**
+     * Increases an observed number of elements by the headroom and bounds it
+     * by MIN_N and MAX_SHRINK of the number of the latest sizing
+     */
+    private static int getN(Map<BloomFilterParams, Object> parameters, BloomFilterParams key, int observed){
+        Integer latest=(Integer)parameters.get(key);
+        int floor=latest==null ? MIN_N : Math.max(MIN_N, (int)(latest.intValue()*MAX_SHRINK));
+        return Math.max(floor, (int)Math.ceil(observed*HEADROOM));
+    }
+
+    private static void set(Map<BloomFilterParams, Object> parameters, int aggregators, int disseminators, int numOfStates, double targetFP, boolean hysteresis){
+        double amsFP=targetFP/Math.max(1, numOfStates);
+        setM(parameters, BloomFilterParams.AMS_M, getM(aggregators, amsFP), hysteresis);
+        parameters.put(BloomFilterParams.AMS_K, getK(amsFP));
+        setM(parameters, BloomFilterParams.AMD_M, getM(aggregators, targetFP), hysteresis);
+        parameters.put(BloomFilterParams.AMD_K, getK(targetFP));
+        setM(parameters, BloomFilterParams.DMA_M, getM(disseminators, targetFP), hysteresis);
+        parameters.put(BloomFilterParams.DMA_K, getK(targetFP));
+        setM(parameters, BloomFilterParams.SMA_M, getM(disseminators, targetFP), hysteresis);
+        parameters.put(BloomFilterParams.SMA_K, getK(targetFP));
+        parameters.put(BloomFilterParams.SIZING_FP, targetFP);
+        parameters.put(BloomFilterParams.SIZING_AGGREGATORS, aggregators);
+        parameters.put(BloomFilterParams.SIZING_DISSEMINATORS, disseminators);
+    }
+
+    /**
+     * Sets the hash width of a filter, keeping the current one if the new one
+     * is smaller but within the hysteresis
+     */
+    private static void setM(Map<BloomFilterParams, Object> parameters, BloomFilterParams key, int m, boolean hysteresis){
+        Integer current=(Integer)parameters.get(key);
+        if(hysteresis && current!=null && m<current.intValue() && current.intValue()-m<SHRINK_HYSTERESIS){
+            m=current.intValue();
+        }
+        parameters.put(key, m);
+    }
+}
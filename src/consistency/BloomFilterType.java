@@ -18,13 +18,31 @@
 package consistency;
 
 /**
- * In DIAS, two types of bloom filters are considered:
+ * In DIAS, the following types of bloom filters are considered:
  * 
  * Simple and counting for the deletion of elements *
  *
+ * Bit-sliced: the simple AMS bloom filters of all the possible states stored
+ * as a transposed bit matrix. The positive AMS memberships of an aggregator
+ * are found in a single pass of k probes.
+ *
+ * Blocked: a simple bloom filter in which all the k bits of an element fall in
+ * one block of a cache line. It cannot remove elements, therefore a blocked SMA
+ * bloom filter is blocked counting.
+ *
+ * Blocked counting: a counting bloom filter in which all the k counters of an
+ * element fall in one block of a cache line.
+ *
+ * Cuckoo: a cuckoo filter of fingerprints that supports the deletion of
+ * elements without counters. It can be used for the AMS and SMA bloom filters.
+ *
  * @author Evangelos
  */
 public enum BloomFilterType {
     SIMPLE,
-    COUNTING
+    COUNTING,
+    BIT_SLICED,
+    BLOCKED,
+    CUCKOO,
+    BLOCKED_COUNTING
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A cuckoo filter that stores 16-bit fingerprints of the members in buckets of
+ * 4 entries. A member can be stored in two buckets. The second bucket is
+ * derived from the first one and the fingerprint, so that fingerprints can be
+ * relocated between their buckets without the original digest. It is
+ * described in:
+ *
+ * B. Fan, D. G. Andersen, M. Kaminsky, M. D. Mitzenmacher, Cuckoo Filter:
+ * Practically Better Than Bloom, CoNEXT 2014
+ *
+ * In contrast to bloom filters, removals are supported without counters. The
+ * filter uses 2^m bits as the DIAS bloom filters, k is not used. A check
+ * compares the fingerprint with at most 8 entries, therefore the false positive
+ * probability is:
+ *
+ * FP=1-(1-1/(2^16-1))^(2n/B)
+ *
+ * where B is the number of buckets. If a member cannot be placed after a
+ * number of relocations, it is kept in a stash that grows as needed, so that
+ * no member is lost. The stashed members are counted as overflows and they are
+ * placed back in the buckets when removals free their entries.
+ *
+ * @author Evangelos
+ */
+public class CuckooFilter implements MembershipFilter {
+
+    private final static int ENTRIES=4;
+    private final static int FINGERPRINT_BITS=16;
+    private final static int MAX_KICKS=500;
+    private final static int STASH_SIZE=4;
+
+    private final char[] entries;
+    private final int bucketMask;
+    private char[] stash;
+    private int[] stashBuckets;
+    private int stashSize;
+    private int seed;
+
+    /**
+     * Initializes an empty cuckoo filter
+     *
+     * @param m the filter has 2^m bits and at least one bucket
+     */
+    public CuckooFilter(int m){
+        int buckets=Math.max(1, (1<<m)/(ENTRIES*FINGERPRINT_BITS));
+        this.entries=new char[buckets*ENTRIES];
+        this.bucketMask=buckets-1;
+        this.stash=new char[STASH_SIZE];
+        this.stashBuckets=new int[STASH_SIZE];
+        this.seed=0x2545F491;
+        this.clear();
+    }
+
+    public void add(long digest){
+        char fingerprint=fingerprint(digest);
+        int i1=MembershipDigest.h1(digest)&bucketMask;
+        int i2=alternate(i1, fingerprint);
+        if(insert(i1, fingerprint) || insert(i2, fingerprint)){
+            return;
+        }
+        int bucket=(nextRandom()&1)==0 ? i1 : i2;
+        for(int kick=0; kick<MAX_KICKS; kick++){
+            int slot=bucket*ENTRIES+(nextRandom()&(ENTRIES-1));
+            char evicted=entries[slot];
+            entries[slot]=fingerprint;
+            fingerprint=evicted;
+            bucket=alternate(bucket, fingerprint);
+            if(insert(bucket, fingerprint)){
+                return;
+            }
+        }
+        this.stash(fingerprint, bucket);
+    }
+
+    public boolean contains(long digest){
+        char fingerprint=fingerprint(digest);
+        int i1=MembershipDigest.h1(digest)&bucketMask;
+        int i2=alternate(i1, fingerprint);
+        if(find(i1, fingerprint)>=0 || find(i2, fingerprint)>=0){
+            return true;
+        }
+        return stashSize>0 && this.findStashed(fingerprint, i1, i2)>=0;
+    }
+
+    /**
+     * Removes one fingerprint of a member from its buckets.
+     *
+     * @return true if a fingerprint of the member is removed
+     */
+    public boolean remove(long digest){
+        char fingerprint=fingerprint(digest);
+        int i1=MembershipDigest.h1(digest)&bucketMask;
+        int i2=alternate(i1, fingerprint);
+        int slot=find(i1, fingerprint);
+        if(slot<0){
+            slot=find(i2, fingerprint);
+        }
+        if(slot>=0){
+            entries[slot]=0;
+            if(stashSize>0){
+                this.unstash(slot/ENTRIES);
+            }
+            return true;
+        }
+        int stashed=stashSize>0 ? this.findStashed(fingerprint, i1, i2) : -1;
+        if(stashed>=0){
+            this.removeStashed(stashed);
+            return true;
+        }
+        return false;
+    }
+
+    public void clear(){
+        Arrays.fill(entries, (char)0);
+        this.stashSize=0;
+    }
+
+    public double getFalsePositiveProbability(int n){
+        double buckets=bucketMask+1.0;
+        double comparisons=Math.min(2.0*ENTRIES, 2.0*n/buckets);
+        return -Math.expm1(comparisons*Math.log1p(-1.0/((1<<FINGERPRINT_BITS)-1)));
+    }
+
+    /**
+     * @return the number of members that could not be placed in the buckets
+     * and are kept in the stash
+     */
+    public int getOverflows(){
+        return stashSize;
+    }
+
+    /**
+     * Keeps a fingerprint that could not be placed in the stash, which is
+     * doubled when it is full.
+     */
+    private void stash(char fingerprint, int bucket){
+        if(stashSize==stash.length){
+            char[] fingerprints=new char[2*stash.length];
+            int[] buckets=new int[2*stash.length];
+            System.arraycopy(stash, 0, fingerprints, 0, stashSize);
+            System.arraycopy(stashBuckets, 0, buckets, 0, stashSize);
+            stash=fingerprints;
+            stashBuckets=buckets;
+        }
+        stash[stashSize]=fingerprint;
+        stashBuckets[stashSize]=bucket;
+        stashSize++;
+    }
+
+    /**
+     * Moves a stashed fingerprint in a bucket after a removal has freed one of
+     * its entries.
+     */
+    private void unstash(int bucket){
+        for(int i=0; i<stashSize; i++){
+            if(stashBuckets[i]==bucket || alternate(stashBuckets[i], stash[i])==bucket){
+                insert(bucket, stash[i]);
+                this.removeStashed(i);
+                return;
+            }
+        }
+    }
+
+    private int findStashed(char fingerprint, int i1, int i2){
+        for(int i=0; i<stashSize; i++){
+            if(stash[i]==fingerprint && (stashBuckets[i]==i1 || stashBuckets[i]==i2)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeStashed(int i){
+        stashSize--;
+        stash[i]=stash[stashSize];
+        stashBuckets[i]=stashBuckets[stashSize];
+    }
+
+    private boolean insert(int bucket, char fingerprint){
+        int offset=bucket*ENTRIES;
+        for(int i=0; i<ENTRIES; i++){
+            if(entries[offset+i]==0){
+                entries[offset+i]=fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int find(int bucket, char fingerprint){
+        int offset=bucket*ENTRIES;
+        for(int i=0; i<ENTRIES; i++){
+            if(entries[offset+i]==fingerprint){
+                return offset+i;
+            }
+        }
+        return -1;
+    }
+
+    private int alternate(int bucket, char fingerprint){
+        return (bucket^(fingerprint*0x5bd1e995))&bucketMask;
+    }
+
+    /**
+     * The fingerprint is taken from the top bits of the digest that are not
+     * used for the bucket. Zero denotes an empty entry.
+     */
+    private static char fingerprint(long digest){
+        char fingerprint=(char)(digest>>>48);
+        return fingerprint==0 ? 1 : fingerprint;
+    }
+
+    private int nextRandom(){
+        seed^=seed<<13;
+        seed^=seed>>>17;
+        seed^=seed<<5;
+        return seed;
+    }
+}
@@ -17,6 +17,12 @@
  */
 package consistency;
 
+import dsutil.generic.state.State;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
 /**
  * The disseminator report contains infromation about the local states and 
  * consistency information about the aggregation. It is outlided as follows:
@@ -29,16 +35,75 @@ package consistency;
  *
  * 3. POSITIVE_AMS_FP: The false positive probabilities of (2).
  *
- * 4. POSITIVE_AMS: Indicates a positive aggregator membership in a disseminator
+ * 4. POSITIVE_AMD: Indicates a positive aggregator membership in a disseminator
  *
  * 5. AMD_FP: The false positive probability of (4).
  *
+ * 6. WEIGHT: The weight of the selected state in the aggregation, only
+ * contained if the disseminator has a weight.
+ *
  * @author Evangelos
  */
-public enum DisseminatorReport {
-    SELECTED_STATE,
-    POSITIVE_AMS,
-    POSITIVE_AMS_FP,
-    POSITIVE_AMD,
-    AMD_FP,
+public final class DisseminatorReport implements Serializable {
+
+    private static final long serialVersionUID=1L;
+
+    private final State selectedState;
+    private final Set<State> positiveAMS;
+    private final Map<UUID, Double> positiveAMSFalsePositives;
+    private final boolean positiveAMD;
+    private final double AMDFalsePositive;
+    private final boolean weighted;
+    private final double weight;
+
+    /**
+     * Creates a disseminator report
+     *
+     * @param selectedState the selected state
+     * @param positiveAMS the states with a positive AMS membership
+     * @param positiveAMSFalsePositives the false positive probabilities of the
+     * positive AMS memberships by state identifier
+     * @param positiveAMD the AMD membership
+     * @param AMDFalsePositive the false positive probability of the AMD
+     * @param weight the weight of the selected state or null if it is not
+     * weighted
+     */
+    public DisseminatorReport(State selectedState, Set<State> positiveAMS, Map<UUID, Double> positiveAMSFalsePositives,
+            boolean positiveAMD, double AMDFalsePositive, Double weight){
+        this.selectedState=selectedState;
+        this.positiveAMS=positiveAMS;
+        this.positiveAMSFalsePositives=positiveAMSFalsePositives;
+        this.positiveAMD=positiveAMD;
+        this.AMDFalsePositive=AMDFalsePositive;
+        this.weighted=weight!=null;
+        this.weight=weight==null ? 0.0 : weight.doubleValue();
+    }
+
+    public State getSelectedState(){
+        return this.selectedState;
+    }
+
+    public Set<State> getPositiveAMS(){
+        return this.positiveAMS;
+    }
+
+    public Map<UUID, Double> getPositiveAMSFalsePositives(){
+        return this.positiveAMSFalsePositives;
+    }
+
+    public boolean isPositiveAMD(){
+        return this.positiveAMD;
+    }
+
+    public double getAMDFalsePositive(){
+        return this.AMDFalsePositive;
+    }
+
+    public boolean isWeighted(){
+        return this.weighted;
+    }
+
+    public double getWeight(){
+        return this.weight;
+    }
 }
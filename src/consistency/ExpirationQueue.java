@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * A time-ordered queue of entries identified by digests. An entry is put
+ * with the current time, which never decreases, so the queue is ordered by
+ * time and the oldest entries expire from its head in O(1) each. Putting an
+ * entry that exists refreshes its time: the new entry is appended and the old
+ * one is left in the queue and skipped when it reaches the head.
+ *
+ * @author Evangelos
+ */
+public class ExpirationQueue<T> {
+
+    private final HashMap<Long, Entry<T>> entries;
+    private final LinkedList<Entry<T>> queue;
+
+    public ExpirationQueue(){
+        this.entries=new HashMap<Long, Entry<T>>();
+        this.queue=new LinkedList<Entry<T>>();
+    }
+
+    /**
+     * Puts or refreshes an entry
+     *
+     * @param digest the digest that identifies the entry
+     * @param value the value of the entry
+     * @param time the current time
+     */
+    public void put(long digest, T value, double time){
+        Entry<T> entry=new Entry<T>(digest, value, time);
+        entries.put(digest, entry);
+        queue.addLast(entry);
+    }
+
+    /**
+     * @return the value of an entry or null if there is no entry
+     */
+    public T get(long digest){
+        Entry<T> entry=entries.get(digest);
+        return entry==null ? null : entry.value;
+    }
+
+    /**
+     * Removes the oldest entry if it was put or refreshed before a given time.
+     *
+     * @param expiration the time before which the entries are expired
+     * @return the expired entry or null if no entry is expired
+     */
+    public Entry<T> poll(double expiration){
+        while(!queue.isEmpty() && queue.getFirst().time<expiration){
+            Entry<T> entry=queue.removeFirst();
+            if(entries.get(entry.digest)==entry){
+                entries.remove(entry.digest);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public void clear(){
+        entries.clear();
+        queue.clear();
+    }
+
+    /**
+     * @return the entries that are not expired, in no particular order
+     */
+    public Collection<Entry<T>> entries(){
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * @return the number of entries that are not expired
+     */
+    public int size(){
+        return entries.size();
+    }
+
+    public static class Entry<T> {
+
+        private final long digest;
+        private final T value;
+        private final double time;
+
+        private Entry(long digest, T value, double time){
+            this.digest=digest;
+            this.value=value;
+            this.time=time;
+        }
+
+        public long getDigest(){
+            return digest;
+        }
+
+        public T getValue(){
+            return value;
+        }
+
+        public double getTime(){
+            return time;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A table of the false positive probabilities of membership filters indexed by
+ * the number of their members. The probability for a number of members is
+ * calculated once, the first time it is requested, and afterwards it is read
+ * from the table without allocations. The table grows with the counters of the
+ * filters up to MAX_SIZE members.
+ *
+ * All the filters that share a table must have the same type and parameters.
+ * The probability of a scalable bloom filter depends on its slices and it is
+ * never tabulated.
+ *
+ * @author Evangelos
+ */
+public class FalsePositiveTable {
+
+    public final static int MAX_SIZE=1<<16;
+    private final static int INITIAL_SIZE=64;
+
+    private double[] probabilities;
+
+    /**
+     * Initializes an empty table
+     */
+    public FalsePositiveTable(){
+        this.probabilities=new double[INITIAL_SIZE];
+        Arrays.fill(this.probabilities, Double.NaN);
+    }
+
+    /**
+     * Provides the false positive probability of a filter
+     *
+     * @param filter a filter with the parameters of the table
+     * @param n the number of members of the filter
+     *
+     * @return the false positive probability of the filter
+     */
+    public double get(MembershipFilter filter, int n){
+        if(n<0 || n>=MAX_SIZE || filter instanceof ScalableBloomFilter){
+            return filter.getFalsePositiveProbability(n);
+        }
+        if(n>=probabilities.length){
+            this.grow(n);
+        }
+        double p=probabilities[n];
+        if(p!=p){
+            p=filter.getFalsePositiveProbability(n);
+            probabilities[n]=p;
+        }
+        return p;
+    }
+
+    /**
+     * Removes all the probabilities from the table, e.g. after the parameters
+     * of the filters change.
+     */
+    public void clear(){
+        Arrays.fill(this.probabilities, Double.NaN);
+    }
+
+    private void grow(int n){
+        int size=probabilities.length;
+        while(size<=n){
+            size<<=1;
+        }
+        double[] grown=new double[Math.min(size, MAX_SIZE)];
+        System.arraycopy(probabilities, 0, grown, 0, probabilities.length);
+        Arrays.fill(grown, probabilities.length, grown.length, Double.NaN);
+        this.probabilities=grown;
+    }
+}
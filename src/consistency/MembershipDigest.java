@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import dsutil.generic.state.State;
+import java.util.UUID;
+import protopeer.Finger;
+
+/**
+ * Computes the 64-bit digests of the members stored in the membership filters.
+ * Aggregators and disseminators are hashed from the identifier and the network
+ * address of their finger, states are hashed from the two longs of their UUID
+ * and values from their bits. No strings are built.
+ *
+ * The digest is split in two 32-bit base hashes h1 and h2 and the filters
+ * derive their k indices by double hashing: g_i = h1 + i*h2.
+ *
+ * <code>DIAS_HASH</code> is the hash type that selects the DIAS filters in the
+ * <code>BloomFilterParams</code>. The rest of the hash types select the
+ * filters of the bloomfilter library.
+ *
+ * @author Evangelos
+ */
+public final class MembershipDigest {
+
+    public static final int DIAS_HASH=0;
+
+    private MembershipDigest(){
+    }
+
+    /**
+     * Computes the digest of a peer
+     *
+     * @param finger the finger of the aggregator or disseminator
+     *
+     * @return the 64-bit digest
+     */
+    public static long digest(Finger finger){
+        long identifier=finger.getIdentifier()==null ? 0 : finger.getIdentifier().hashCode();
+        long address=finger.getNetworkAddress()==null ? 0 : finger.getNetworkAddress().hashCode();
+        return mix((identifier<<32)^(address&0xFFFFFFFFL));
+    }
+
+    /**
+     * Computes the digest of a state
+     *
+     * @param state the selected or possible state
+     *
+     * @return the 64-bit digest
+     */
+    public static long digest(State state){
+        UUID id=state.getStateId();
+        return mix(mix(id.getMostSignificantBits())^id.getLeastSignificantBits());
+    }
+
+    /**
+     * Computes the digest of a value, the same for 0.0 and -0.0
+     *
+     * @param value the value of an arithmetic state
+     *
+     * @return the 64-bit digest
+     */
+    public static long digest(double value){
+        return mix(Double.doubleToLongBits(value+0.0));
+    }
+
+    /**
+     * Computes the digest of a list of values from the digests of its values
+     *
+     * @param values the values of an arithmetic list state
+     * @param length the number of values
+     *
+     * @return the 64-bit digest
+     */
+    public static long digest(double[] values, int length){
+        long digest=length;
+        for(int i=0; i<length; i++){
+            digest=mix(digest^Double.doubleToLongBits(values[i]+0.0));
+        }
+        return digest;
+    }
+
+    /**
+     * Computes the digest of a sparse list of values from the indices and the
+     * digests of its non-zero values
+     *
+     * @param dimensions the number of values of the list
+     * @param indices the indices of the non-zero values
+     * @param values the non-zero values
+     *
+     * @return the 64-bit digest
+     */
+    public static long digest(int dimensions, int[] indices, double[] values){
+        long digest=dimensions;
+        for(int k=0; k<indices.length; k++){
+            digest=mix(mix(digest^indices[k])^Double.doubleToLongBits(values[k]));
+        }
+        return digest;
+    }
+
+    /**
+     * The first base hash of a digest
+     *
+     * @param digest the digest
+     *
+     * @return h1
+     */
+    public static int h1(long digest){
+        return (int)digest;
+    }
+
+    /**
+     * The second base hash of a digest. It is always odd so that the double
+     * hashing visits k different indices in power of two filters.
+     *
+     * @param digest the digest
+     *
+     * @return h2
+     */
+    public static int h2(long digest){
+        return (int)(digest>>>32)|1;
+    }
+
+    /**
+     * The finalization step of MurmurHash3 that spreads the input bits over
+     * the whole digest.
+     */
+    private static long mix(long h){
+        h^=h>>>33;
+        h*=0xff51afd7ed558ccdL;
+        h^=h>>>33;
+        h*=0xc4ceb9fe1a85ec53L;
+        h^=h>>>33;
+        return h;
+    }
+}
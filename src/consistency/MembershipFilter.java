@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+/**
+ * The contract of the bloom filters that store the memberships of DIAS: AMS,
+ * AMD, DMA and SMA.
+ *
+ * Memberships are not added as strings but as a 64-bit digest of the member
+ * computed by <code>MembershipDigest</code>. Every filter derives its own
+ * indices from the digest. In this way, an aggregator or a state is hashed
+ * once independently of the number of filters that are checked.
+ *
+ * Removals are only supported by counting filters. Filters that do not support
+ * removals return false and leave their memberships intact.
+ *
+ * @author Evangelos
+ */
+public interface MembershipFilter {
+
+    /**
+     * Adds a membership in the filter
+     *
+     * @param digest the digest of the member
+     */
+    public void add(long digest);
+
+    /**
+     * Checks a membership in the filter
+     *
+     * @param digest the digest of the member
+     *
+     * @return true if the member is contained, possibly as a false positive
+     */
+    public boolean contains(long digest);
+
+    /**
+     * Removes a membership from the filter
+     *
+     * @param digest the digest of the member
+     *
+     * @return false if the filter does not support removals
+     */
+    public boolean remove(long digest);
+
+    /**
+     * Removes all the memberships of the filter
+     */
+    public void clear();
+
+    /**
+     * Calculates the false positive probability of the filter given a number
+     * of added items.
+     *
+     * @param n the number of elements added in the filter
+     *
+     * @return the false positive probability
+     */
+    public double getFalsePositiveProbability(int n);
+}
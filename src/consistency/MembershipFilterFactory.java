@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import bloomfilter.CBloomFilter;
+import bloomfilter.CCountingFilter;
+import bloomfilter.CHashFactory;
+
+/**
+ * Creates the membership filters of the aggregator and the disseminator given
+ * the bloom filter type and the parameters of a filter.
+ *
+ * The hash type <code>MembershipDigest.DIAS_HASH</code> selects the DIAS simple
+ * and counting bloom filters. The hash types of <code>CHashFactory</code>
+ * select the filters of the bloomfilter library. A single
+ * bit-sliced filter is a simple DIAS bloom filter, the bit-sliced layout of
+ * many filters is provided by <code>BitSlicedBloomFilterMatrix</code>. Blocked,
+ * blocked counting and cuckoo filters are always DIAS filters.
+ *
+ * @author Evangelos
+ */
+public final class MembershipFilterFactory {
+
+    private MembershipFilterFactory(){
+    }
+
+    /**
+     * Creates a membership filter
+     *
+     * @param type the bloom filter type
+     * @param hashType the hash type
+     * @param m the hash width, the filter has 2^m positions
+     * @param k the number of hash functions
+     *
+     * @return the membership filter or null if the type is unknown
+     */
+    public static MembershipFilter create(BloomFilterType type, int hashType, int m, int k){
+        switch(type){
+            case SIMPLE:
+                if(hashType==MembershipDigest.DIAS_HASH){
+                    return new BitSetBloomFilter(m, k);
+                }
+                return new XSienaMembershipFilter(new CBloomFilter(new CHashFactory(hashType, m, k)));
+            case COUNTING:
+                if(hashType==MembershipDigest.DIAS_HASH){
+                    return new NibbleCountingBloomFilter(m, k);
+                }
+                return new XSienaMembershipFilter(new CCountingFilter(new CHashFactory(hashType, m, k)));
+            case BIT_SLICED:
+                return new BitSetBloomFilter(m, k);
+            case BLOCKED:
+                return new BlockedBloomFilter(m, k);
+            case CUCKOO:
+                return new CuckooFilter(m);
+            case BLOCKED_COUNTING:
+                return new BlockedCountingBloomFilter(m, k);
+            default:
+                // other type of bloom filter
+                return null;
+        }
+    }
+
+    /**
+     * Creates a membership filter that is scalable if a bound of its false
+     * positive probability is given
+     *
+     * @param type the bloom filter type of the filter or of its slices
+     * @param hashType the hash type
+     * @param m the hash width, the filter or its first slice has 2^m positions
+     * @param k the number of hash functions of the filter or of its first slice
+     * @param targetFP the bound of the false positive probability or null for
+     * a filter of fixed size
+     *
+     * @return the membership filter or null if the type is unknown
+     */
+    public static MembershipFilter create(BloomFilterType type, int hashType, int m, int k, Double targetFP){
+        if(targetFP==null || targetFP.doubleValue()<=0.0){
+            return create(type, hashType, m, k);
+        }
+        if(!isKnown(type)){
+            return null;
+        }
+        return new ScalableBloomFilter(type, hashType, m, k, targetFP.doubleValue());
+    }
+
+    /**
+     * @param type the bloom filter type
+     *
+     * @return true if a filter of the type can be created
+     */
+    private static boolean isKnown(BloomFilterType type){
+        switch(type){
+            case SIMPLE:
+            case COUNTING:
+            case BIT_SLICED:
+            case BLOCKED:
+            case CUCKOO:
+            case BLOCKED_COUNTING:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
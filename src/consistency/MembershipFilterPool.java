@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of membership filters with the same type and parameters that are
+ * reused across aggregation epochs instead of allocating new ones. The filters
+ * of an epoch are retired at the end of the epoch and they are cleared later,
+ * when the pool is prepared for the next epoch. Only cleared filters are
+ * provided by the pool, so that taking a filter never zeroes it.
+ *
+ * The pool holds up to a capacity of filters, the rest of the retired filters
+ * are dropped.
+ *
+ * @author Evangelos
+ */
+public class MembershipFilterPool {
+
+    private final ArrayList<MembershipFilter> cleared;
+    private final ArrayList<MembershipFilter> retired;
+    private int capacity;
+
+    /**
+     * Initializes an empty pool
+     *
+     * @param capacity the maximum number of pooled filters
+     */
+    public MembershipFilterPool(int capacity){
+        this.cleared=new ArrayList<MembershipFilter>(capacity);
+        this.retired=new ArrayList<MembershipFilter>(capacity);
+        this.capacity=capacity;
+    }
+
+    /**
+     * Takes a cleared filter from the pool
+     *
+     * @return a cleared filter or null if there is none
+     */
+    public MembershipFilter poll(){
+        if(cleared.isEmpty()){
+            return null;
+        }
+        return cleared.remove(cleared.size()-1);
+    }
+
+    /**
+     * Returns a filter that is no longer used to the pool. It is cleared when
+     * the pool is prepared.
+     *
+     * @param filter the retired filter
+     */
+    public void retire(MembershipFilter filter){
+        if(cleared.size()+retired.size()<capacity){
+            retired.add(filter);
+        }
+    }
+
+    /**
+     * Clears the retired filters so that they can be taken from the pool.
+     */
+    public void prepare(){
+        for(int i=retired.size()-1; i>=0; i--){
+            MembershipFilter filter=retired.remove(i);
+            filter.clear();
+            cleared.add(filter);
+        }
+    }
+
+    /**
+     * Drops all the filters of the pool, e.g. after the parameters of the
+     * filters change.
+     */
+    public void clear(){
+        cleared.clear();
+        retired.clear();
+    }
+
+    /**
+     * @param capacity the maximum number of pooled filters
+     */
+    public void setCapacity(int capacity){
+        this.capacity=capacity;
+    }
+
+    /**
+     * @return the number of cleared filters that can be taken from the pool
+     */
+    public int getCleared(){
+        return cleared.size();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * A counting bloom filter with 4-bit counters, 16 of them packed in every
+ * long. It has 2^m counters and k hash functions like the simple DIAS bloom
+ * filter.
+ *
+ * A counter saturates at 15. A saturated counter is never incremented or
+ * decremented again, as its real value is unknown. This may leave false
+ * positives after removals but never false negatives. The filter counts the
+ * increments that hit a saturated counter.
+ *
+ * @author Evangelos
+ */
+public class NibbleCountingBloomFilter implements MembershipFilter {
+
+    private final static long MAX_COUNT=15L;
+
+    private final long[] counters;
+    private final int mask;
+    private final int k;
+    private int overflows;
+
+    /**
+     * Initializes an empty counting bloom filter
+     *
+     * @param m the hash width, the filter has 2^m counters
+     * @param k the number of hash functions
+     */
+    public NibbleCountingBloomFilter(int m, int k){
+        int size=1<<m;
+        this.counters=new long[Math.max(1, size>>>4)];
+        this.mask=size-1;
+        this.k=k;
+        this.overflows=0;
+    }
+
+    public void add(long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        for(int i=0; i<k; i++){
+            if(!increment(counters, (h1+i*h2)&mask)){
+                overflows++;
+            }
+        }
+    }
+
+    public boolean contains(long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        for(int i=0; i<k; i++){
+            if(isZero(counters, (h1+i*h2)&mask)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decrements the counters of a member that is contained in the filter.
+     * Saturated counters are not decremented.
+     *
+     * @return true
+     */
+    public boolean remove(long digest){
+        int h1=MembershipDigest.h1(digest);
+        int h2=MembershipDigest.h2(digest);
+        for(int i=0; i<k; i++){
+            decrement(counters, (h1+i*h2)&mask);
+        }
+        return true;
+    }
+
+    public void clear(){
+        Arrays.fill(counters, 0L);
+        this.overflows=0;
+    }
+
+    public double getFalsePositiveProbability(int n){
+        double m=mask+1.0;
+        return Math.pow((1-Math.exp(-k*n/m)), k);
+    }
+
+    /**
+     * @return the number of increments that found a saturated counter since
+     * the filter was created or cleared
+     */
+    public int getOverflows(){
+        return overflows;
+    }
+
+    /**
+     * Increments a 4-bit counter unless it is saturated
+     *
+     * @param counters the packed counters
+     * @param index the index of the counter
+     *
+     * @return false if the counter is saturated
+     */
+    static boolean increment(long[] counters, int index){
+        int shift=(index&15)<<2;
+        long count=(counters[index>>>4]>>>shift)&MAX_COUNT;
+        if(count<MAX_COUNT){
+            counters[index>>>4]+=1L<<shift;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decrements a 4-bit counter unless it is zero or saturated
+     *
+     * @param counters the packed counters
+     * @param index the index of the counter
+     */
+    static void decrement(long[] counters, int index){
+        int shift=(index&15)<<2;
+        long count=(counters[index>>>4]>>>shift)&MAX_COUNT;
+        if(count>0 && count<MAX_COUNT){
+            counters[index>>>4]-=1L<<shift;
+        }
+    }
+
+    /**
+     * @param counters the packed counters
+     * @param index the index of the counter
+     *
+     * @return true if the 4-bit counter is zero
+     */
+    static boolean isZero(long[] counters, int index){
+        return ((counters[index>>>4]>>>((index&15)<<2))&MAX_COUNT)==0;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import java.util.ArrayList;
+
+/**
+ * A scalable bloom filter that grows with the number of its members. It starts
+ * with one slice and adds a new slice when the false positive probability of
+ * the last slice would exceed its bound. New members are added to the last
+ * slice, checks and removals cover all the slices. It is described in:
+ *
+ * P. S. Almeida, C. Baquero, N. Preguica, D. Hutchison, Scalable Bloom
+ * Filters, Information Processing Letters 101(6), 2007
+ *
+ * Slice i has 2^(m+i) positions and k+i hash functions, up to the maximum
+ * sizes of <code>BloomFilterSizing</code>, and its false positive
+ * probability is bounded by P*(1-r)*r^i with r=1/2. The false positive
+ * probability of the whole filter remains therefore below the target P:
+ *
+ * FP=1-PRODUCT_i (1-FP_i(n_i)) &lt; P
+ *
+ * where n_i is the number of members of slice i. The slices are created by
+ * <code>MembershipFilterFactory</code> and can be of any type of a single
+ * filter. A new slice is also added when the last slice is a cuckoo filter
+ * that has stashed members that did not fit. Removals are supported if the
+ * slices support them. A member is removed from the newest slice that contains
+ * it, as in a single counting filter. If that slice contains the member as a
+ * false positive, the removal decrements the counters of other members there
+ * and leaves the member in an older slice. The callers therefore remove only
+ * members that they have added.
+ *
+ * @author Evangelos
+ */
+public class ScalableBloomFilter implements MembershipFilter {
+
+    private final static double TIGHTENING_RATIO=0.5;
+
+    private final BloomFilterType type;
+    private final int hashType;
+    private final int m;
+    private final int k;
+    private final double targetFP;
+    private final ArrayList<MembershipFilter> slices;
+    private final ArrayList<Integer> counters;
+
+    /**
+     * Initializes a scalable bloom filter with a single empty slice
+     *
+     * @param type the bloom filter type of the slices
+     * @param hashType the hash type of the slices
+     * @param m the hash width of the first slice
+     * @param k the number of hash functions of the first slice
+     * @param targetFP the bound of the false positive probability
+     */
+    public ScalableBloomFilter(BloomFilterType type, int hashType, int m, int k, double targetFP){
+        this.type=type;
+        this.hashType=hashType;
+        this.m=m;
+        this.k=k;
+        this.targetFP=targetFP;
+        this.slices=new ArrayList<MembershipFilter>();
+        this.counters=new ArrayList<Integer>();
+        this.addSlice();
+    }
+
+    public void add(long digest){
+        int last=slices.size()-1;
+        int n=counters.get(last).intValue()+1;
+        if(slices.get(last).getFalsePositiveProbability(n)>this.getSliceBound(last) && m+last<BloomFilterSizing.MAX_M){
+            this.addSlice();
+            last++;
+            n=1;
+        }
+        if(slices.get(last) instanceof CuckooFilter && ((CuckooFilter)slices.get(last)).getOverflows()>0
+                && m+last<BloomFilterSizing.MAX_M){
+            // the cuckoo filter is full and stashes its members
+            this.addSlice();
+            last++;
+            n=1;
+        }
+        slices.get(last).add(digest);
+        counters.set(last, n);
+    }
+
+    public boolean contains(long digest){
+        for(int i=slices.size()-1; i>=0; i--){
+            if(slices.get(i).contains(digest)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a member from the newest slice that contains it.
+     *
+     * @return false if no slice contains the member or the slices do not
+     * support removals
+     */
+    public boolean remove(long digest){
+        for(int i=slices.size()-1; i>=0; i--){
+            if(slices.get(i).contains(digest)){
+                if(!slices.get(i).remove(digest)){
+                    return false;
+                }
+                counters.set(i, Math.max(0, counters.get(i).intValue()-1));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops all the slices but the first one and clears it.
+     */
+    public void clear(){
+        while(slices.size()>1){
+            slices.remove(slices.size()-1);
+            counters.remove(counters.size()-1);
+        }
+        slices.get(0).clear();
+        counters.set(0, 0);
+    }
+
+    /**
+     * The false positive probability is calculated from the number of members
+     * of every slice that the filter tracks.
+     *
+     * @param n the number of members of the filter, not used
+     *
+     * @return the false positive probability of the filter
+     */
+    public double getFalsePositiveProbability(int n){
+        double negative=1.0;
+        for(int i=0; i<slices.size(); i++){
+            negative*=1.0-slices.get(i).getFalsePositiveProbability(counters.get(i).intValue());
+        }
+        return 1.0-negative;
+    }
+
+    /**
+     * @return the number of slices of the filter
+     */
+    public int getSlices(){
+        return slices.size();
+    }
+
+    /**
+     * @return the bound of the false positive probability of the filter
+     */
+    public double getTargetFalsePositiveProbability(){
+        return targetFP;
+    }
+
+    private double getSliceBound(int slice){
+        return targetFP*(1-TIGHTENING_RATIO)*Math.pow(TIGHTENING_RATIO, slice);
+    }
+
+    private void addSlice(){
+        int i=slices.size();
+        slices.add(MembershipFilterFactory.create(type, hashType, m+i, Math.min(BloomFilterSizing.MAX_K, k+i)));
+        counters.add(0);
+    }
+}
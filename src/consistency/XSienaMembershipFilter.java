@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 Evangelos Pournaras
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package consistency;
+
+import bloomfilter.ICountingFilter;
+import bloomfilter.IFilter;
+
+/**
+ * Adapts the simple and counting filters of the bloomfilter library to the
+ * membership filters of DIAS. The library hashes strings, therefore the digest
+ * of a member is used as its string key.
+ *
+ * @author Evangelos
+ */
+public class XSienaMembershipFilter implements MembershipFilter {
+
+    private final IFilter filter;
+
+    /**
+     * Wraps a filter of the bloomfilter library
+     *
+     * @param filter a simple or counting filter
+     */
+    public XSienaMembershipFilter(IFilter filter){
+        this.filter=filter;
+    }
+
+    public void add(long digest){
+        filter.add(Long.toHexString(digest));
+    }
+
+    public boolean contains(long digest){
+        return filter.contains(Long.toHexString(digest));
+    }
+
+    /**
+     * Removes a membership if the wrapped filter is a counting filter.
+     *
+     * @return false if the wrapped filter is simple
+     */
+    public boolean remove(long digest){
+        if(filter instanceof ICountingFilter){
+            ((ICountingFilter)filter).remove(Long.toHexString(digest));
+            return true;
+        }
+        return false;
+    }
+
+    public void clear(){
+        filter.clear();
+    }
+
+    public double getFalsePositiveProbability(int n){
+        double k=filter.hash().k();
+        double m=filter.container().size();
+        return Math.pow((1-Math.pow(Math.E, -k*n/m)), k);
+    }
+
+    /**
+     * @return the wrapped filter of the bloomfilter library
+     */
+    public IFilter getFilter(){
+        return filter;
+    }
+}
@@ -20,7 +20,9 @@ package peerlets;
 import actors.Aggregator;
 import actors.Disseminator;
 import dsutil.protopeer.services.aggregation.AggregationFunction;
-import aggregation.AggregationState;
+import aggregation.AggregateSnapshot;
+import aggregation.AggregationParams;
+import aggregation.PrimitiveAggregationState;
 import dsutil.protopeer.services.aggregation.AggregationType;
 import communication.AggregationStrategy;
 import communication.DIASMessType;
@@ -31,11 +33,13 @@ import communication.Push;
 import consistency.AggregationOutcome;
 import consistency.AggregatorReport;
 import consistency.BloomFilterParams;
+import consistency.BloomFilterSizing;
 import consistency.DisseminatorReport;
 
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import org.apache.log4j.Logger;
 
@@ -45,7 +49,6 @@ import protocols.SimpleDIASApplication;
 import protopeer.BasePeerlet;
 import protopeer.Finger;
 import protopeer.Peer;
-import dsutil.generic.state.ArithmeticState;
 import dsutil.generic.state.State;
 import dsutil.protopeer.services.aggregation.AggregationInterface;
 import protopeer.measurement.MeasurementFileDumper;
@@ -112,14 +115,27 @@ import protopeer.util.quantities.Time;
  * is no any available, an outdated is selected. 3. UPDATE: An outdated neighbor is selected. If there is no any
  * available, an unexploited is selected.
  *
+ *
+ * Several aggregation sessions, identified by their names, can run in one DIAS peerlet. Every session has its own
+ * aggregator, disseminator and aggregation epoch, kept in arrays that are indexed by the session, while the sampling,
+ * the aggregation strategy and the timers are shared. The reports of all the sessions are batched in one message per
+ * exchange, so that the number of messages does not grow with the number of sessions. A neighbor is exploited if it is
+ * exploited in all the sessions. The methods without a session name refer to the DEFAULT_SESSION.
  * @author Evangelos
  */
 public class DIAS extends BasePeerlet implements DIASInterface, AggregationInterface {
 
+	/**
+	 * The session of the aggregation that is requested without a session name
+	 */
+	public static final String DEFAULT_SESSION = "default";
+
 	private boolean active;
-	private int aggregationEpoch;
-	private Aggregator aggregator;
-	private Disseminator disseminator;
+	private String[] sessions;
+	private int[] aggregationEpochs;
+	private Aggregator[] aggregators;
+	private Disseminator[] disseminators;
+	private EpochPreparation[] preparations;
 	private MeasurementFileDumper dumper;
 	private String id;
 	private final int Tdias;
@@ -128,6 +144,10 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 	private final AggregationStrategy strategy;
 	private final int sampleSize;
 	private final Map<BloomFilterParams, Object> bloomFilterParams;
+	private final Map<AggregationParams, Object> aggregationParams;
+	private final Double window;
+	private volatile Map<String, Integer> sessionIndices;
+	private volatile AggregateSnapshot[] snapshots;
 
 	private int firstOutcomes = 0;
 	private int doubleOutcomes = 0;
@@ -167,14 +187,56 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 	public DIAS(String id, int Tdias, int numOfSessions, int Tsampling, int sampleSize,
 			AggregationStrategy.Strategy strategy, int unexploitedSize, int outdatedSize, int exploitedSize,
 			Map<BloomFilterParams, Object> bloomFilterParams) {
+		this(id, Tdias, numOfSessions, Tsampling, sampleSize, strategy, unexploitedSize, outdatedSize, exploitedSize,
+				bloomFilterParams, new HashMap<AggregationParams, Object>());
+	}
+
+	/**
+	 * DIAS initialization with optional parameters of the aggregation state
+	 *
+	 * @param id
+	 *            the local identifier of the experiment of a specific peer
+	 * @param Tdias
+	 *            the dissemination period
+	 * @param numOfSessions
+	 *            the number of sessions that can run periodically in DIAS
+	 * @param Tsampling
+	 *            the sampling period from Peer Sampling Service
+	 * @param sampleSize
+	 *            the sample size for selecting contact aggregators
+	 * @param strategy
+	 *            the strategy for the sampling selection of candidate aggregators
+	 * @param undiscoveredSize
+	 *            the size of the queue with the undiscovered neighbors
+	 * @param outdatedSize
+	 *            the size of the queue with the outdated neighbors
+	 * @param exploitedSize
+	 *            the size of the queue with the updated neighbors
+	 * @param bloomFilterParams
+	 *            the parameterization of the bloom filters in the aggregator and disseminator
+	 * @param aggregationParams
+	 *            the parameterization of the aggregation state in the aggregator
+	 */
+	public DIAS(String id, int Tdias, int numOfSessions, int Tsampling, int sampleSize,
+			AggregationStrategy.Strategy strategy, int unexploitedSize, int outdatedSize, int exploitedSize,
+			Map<BloomFilterParams, Object> bloomFilterParams, Map<AggregationParams, Object> aggregationParams) {
 		this.id = id;
 		this.Tdias = Tdias;
 		this.numOfSessions = numOfSessions;
 		this.Tsampling = Tsampling;
 		this.sampleSize = sampleSize;
 		this.strategy = new AggregationStrategy(strategy, unexploitedSize, outdatedSize, exploitedSize);
-		this.bloomFilterParams = bloomFilterParams;
+		this.bloomFilterParams = new HashMap<BloomFilterParams, Object>(bloomFilterParams);
+		this.aggregationParams = new HashMap<AggregationParams, Object>(aggregationParams);
+		this.window = (Double) this.aggregationParams.get(AggregationParams.WINDOW);
 		this.active = false;
+		this.sessions = new String[0];
+		this.aggregationEpochs = new int[0];
+		this.aggregators = new Aggregator[0];
+		this.disseminators = new Disseminator[0];
+		this.preparations = new EpochPreparation[0];
+		this.snapshots = new AggregateSnapshot[0];
+		this.sessionIndices = new HashMap<String, Integer>();
 	}
 
 	/**
@@ -231,6 +293,7 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 		Timer diasTimer = getPeer().getClock().createNewTimer();
 		diasTimer.addTimerListener(new TimerListener() {
 			public void timerExpired(Timer timer) {
+				advanceTime();
 				for (int i = 0; i < numOfSessions; i++) {
 					Finger aggregator = strategy.getSample();
 					// Finger aggregator=getPeerSamplingService().getRandomFinger();
@@ -260,8 +323,7 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 				for (int i = 0; i < sampleSize; i++) {
 					Finger sample = getPeerSamplingService().getRandomFinger();
 					if (!strategy.containsSample(sample)) {
-						strategy.setSample(sample, disseminator.checkAMDMembership(sample),
-								disseminator.checkAMSMembership(disseminator.getSelectedState(), sample));
+						strategy.setSample(sample, checkAMDMemberships(sample), checkAMSMemberships(sample));
 					}
 				}
 				collectSamples();
@@ -270,65 +332,98 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 		sampleCollectionTimer.schedule(Time.inMilliseconds(this.Tsampling - ((Math.random() - 0.5) * this.Tsampling)));
 	}
 
+	/**
+	 * Checks again the AMD and AMS memberships of the collected samples in all the sessions, after the bloom filters
+	 * of a session are replaced by a new aggregation epoch or a new session, so that the classification of the other
+	 * sessions is kept.
+	 */
+	private void reclassifySamples() {
+		for (Finger sample : this.strategy.exportSamples()) {
+			this.strategy.setSample(sample, this.checkAMDMemberships(sample), this.checkAMSMemberships(sample));
+		}
+	}
+
+	/**
+	 * Checks the AMD membership of a peer in the disseminators of all the sessions
+	 *
+	 * @param finger
+	 *            the peer
+	 * @return true if all the disseminators have the AMD membership
+	 */
+	private boolean checkAMDMemberships(Finger finger) {
+		for (Disseminator disseminator : this.disseminators) {
+			if (!disseminator.checkAMDMembership(finger)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the AMS membership of a peer for the selected states of all the sessions
+	 *
+	 * @param finger
+	 *            the peer
+	 * @return true if all the disseminators have the AMS membership for their selected state
+	 */
+	private boolean checkAMSMemberships(Finger finger) {
+		for (Disseminator disseminator : this.disseminators) {
+			if (!disseminator.checkAMSMembership(disseminator.getSelectedState(), finger)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * The passive selectedState defines the reaction of a DIAS peerlet to a received DIAS message. A reaction is
-	 * defined if and only if the two nodes aggregate within the same aggregationEpoch. Reactions are as follows:
+	 * defined for the sessions of the message that are aggregated within the same aggregationEpoch. Reactions are as
+	 * follows:
 	 *
-	 * 1. PUSH: The aggregator report is generated and the disseminator report is potentially incorporated in the
-	 * pull-push message. 2. PULL_PUSH: The disseminator receives the final aggregator report. The aggregator aggregates
-	 * the dissemiantor report and a pull message is generated for the disseminator. 3. PULL: The diseminator receives
-	 * the aggregator report.
+	 * 1. PUSH: The aggregator reports are generated and the disseminator reports are potentially incorporated in the
+	 * pull-push message. 2. PULL_PUSH: The disseminators receive the final aggregator reports. The aggregators aggregate
+	 * the dissemiantor reports and a pull message is generated for the disseminator. 3. PULL: The diseminators receive
+	 * the aggregator reports.
 	 *
 	 * @param message
 	 *            the received DIAS message
 	 */
 	private void runPassiveState(DIASMessage message) {
-
-		if (message.aggregationEpoch == this.aggregationEpoch) {
-			switch (message.type) {
-			case PUSH:
-				Push push=(Push)message;
-				boolean amdCheck=this.disseminator.checkAMDMembership(push.sender);
-                boolean amsCheck=this.disseminator.checkAMSMembership(this.disseminator.getSelectedState(), push.sender);
-                //if(this.strategy.isPossibleAggregation(amdCheck, amsCheck)){
-                //    this.strategy.removeNeighbor(push.sender);
-                //    PullPush plps=this.createPullPushMessage(push.sender, push.report);
-                //    getPeer().sendMessage(push.sender.getNetworkAddress(), plps);
-                //    this.numOfPullPushes++;
-                //}
-                //else{
-                    Pull pull=this.createPullMessage(push.sender, push.report);
-                    getPeer().sendMessage(push.sender.getNetworkAddress(), pull);
-                    this.numOfPulls++;
-                //}
-                break;
-			case PULL_PUSH:
-				PullPush pullPush = (PullPush) message;
-				logger.debug("ppidx " + getPeer().getIndexNumber() + " AggregateSum"
-						+ (Double) getAggregate(AggregationFunction.SUM) + " SelectedState "
-						+ ((ArithmeticState) pullPush.push.report.get(DisseminatorReport.SELECTED_STATE)).getValue());
-
-				boolean pullPushAck = disseminator.receiveAggregatorReport(pullPush.sender, pullPush.report);
-				if (pullPushAck) {
-					this.strategy.importExploited(pullPush.sender);
-				}
-				Push ps = pullPush.push;
-				Pull pl = this.createPullMessage(ps.sender, ps.report);
+		switch (message.type) {
+		case PUSH:
+			Push push = (Push) message;
+			// boolean amdCheck=this.checkAMDMemberships(push.sender);
+			// boolean amsCheck=this.checkAMSMemberships(push.sender);
+			// if(this.strategy.isPossibleAggregation(amdCheck, amsCheck)){
+			//     this.strategy.removeNeighbor(push.sender);
+			//     PullPush plps=this.createPullPushMessage(push);
+			//     getPeer().sendMessage(push.sender.getNetworkAddress(), plps);
+			//     this.numOfPullPushes++;
+			// }
+			// else{
+			Pull pull = this.createPullMessage(push);
+			if (pull != null) {
+				getPeer().sendMessage(push.sender.getNetworkAddress(), pull);
+				this.numOfPulls++;
+			}
+			// }
+			break;
+		case PULL_PUSH:
+			PullPush pullPush = (PullPush) message;
+			logger.debug("ppidx " + getPeer().getIndexNumber() + " AggregateSum"
+					+ getAggregate(AggregationFunction.SUM) + " Sessions " + pullPush.sessions.length);
+			this.receivePull(pullPush);
+			Pull pl = this.createPullMessage(pullPush.push);
+			if (pl != null) {
 				getPeer().sendMessage(pullPush.sender.getNetworkAddress(), pl);
 				this.numOfPulls++;
-				break;
-			case PULL:
-				Pull pull1 = (Pull) message;
-				boolean pullAck = this.disseminator.receiveAggregatorReport(pull1.sender, pull1.report);
-				if (pullAck) {
-					this.strategy.importExploited(pull1.sender);
-				}
-				break;
-			default:
-				// other type of DIAS message
 			}
-		} else {
-			// ignore messages in different aggregation epoch
+			break;
+		case PULL:
+			this.receivePull((Pull) message);
+			break;
+		default:
+			// other type of DIAS message
 		}
 	}
 
@@ -341,142 +436,606 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 	@Override
 	public void handleIncomingMessage(Message message) {
 		if (message instanceof DIASMessage && active) {
+			this.advanceTime();
 			this.runPassiveState((DIASMessage) message);
 		}
 	}
 
 	/**
-	 * Creates a PUSH message by creating a dissemiantor report for a given aggregator
+	 * Finds the local sessions of the sessions of a message. Sessions in a different aggregation epoch are ignored.
+	 *
+	 * @param message
+	 *            the received DIAS message
+	 * @return the indices of the local sessions in the order of the sessions of the message, -1 for a session that is
+	 *         not aggregated locally in the same aggregation epoch
+	 */
+	private int[] getSessionIndices(DIASMessage message) {
+		int[] indices = new int[message.sessions.length];
+		for (int k = 0; k < indices.length; k++) {
+			Integer index = this.sessionIndices.get(message.sessions[k]);
+			if (index != null && this.aggregationEpochs[index.intValue()] == message.aggregationEpochs[k]) {
+				indices[k] = index.intValue();
+			} else {
+				indices[k] = -1;
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * Counts the sessions of a message that are aggregated locally.
+	 *
+	 * @param indices
+	 *            the local sessions of the sessions of a message
+	 * @return the number of local sessions
+	 */
+	private static int countSessions(int[] indices) {
+		int count = 0;
+		for (int index : indices) {
+			if (index >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The disseminators of the sessions receive the aggregator reports of a pull message. The aggregator becomes an
+	 * exploited neighbor if the aggregation is acknowledged in all the sessions.
+	 *
+	 * @param pull
+	 *            the received pull or pull-push message
+	 */
+	private void receivePull(Pull pull) {
+		int[] indices = this.getSessionIndices(pull);
+		int acks = 0;
+		for (int k = 0; k < indices.length; k++) {
+			if (indices[k] >= 0 && this.disseminators[indices[k]].receiveAggregatorReport(pull.sender, pull.reports[k])) {
+				acks++;
+			}
+		}
+		if (acks > 0 && acks == this.sessions.length) {
+			this.strategy.importExploited(pull.sender);
+		}
+	}
+
+	/**
+	 * Creates a PUSH message by creating a dissemiantor report of every session for a given aggregator
 	 *
 	 * @param aggregator
-	 *            the aggregator for which the disseminator report is generated
+	 *            the aggregator for which the disseminator reports are generated
 	 *
 	 * @return a push message
 	 */
 	private Push createPushMessage(Finger aggregator) {
-		Push push = new Push(this.aggregationEpoch);
+		Push push = new Push(this.sessions, this.aggregationEpochs.clone());
 		push.sender = getPeer().getFinger();
-		push.report = this.disseminator.createDisseminatorReport(aggregator);
+		for (int i = 0; i < this.sessions.length; i++) {
+			push.reports[i] = this.disseminators[i].createDisseminatorReport(aggregator);
+		}
 		return push;
 	}
 
 	/**
-	 * Creates a PULL message by creating an aggregator report based on a received disseminator report
+	 * Creates a PULL message by creating the aggregator reports based on the disseminator reports of a received push
 	 *
-	 * @param disseminator
-	 *            the disseminator that contacted the local aggregator
-	 * @param disseminatorReport
-	 *            the report received by the disseminator
+	 * @param push
+	 *            the push message of the disseminator that contacted the local aggregators
 	 *
-	 * @return a pull message
+	 * @return a pull message or null if no session of the push is aggregated locally
 	 */
-	private Pull createPullMessage(Finger disseminator, HashMap<DisseminatorReport, Object> disseminatorReport) {
-		Pull pull = new Pull(this.aggregationEpoch);
-		pull.sender = getPeer().getFinger();
-		HashMap<AggregatorReport, Object> aggregatorReport = aggregator.receiveDisseminatorReport(disseminator,
-				disseminatorReport);
-		pull.report = aggregatorReport;
-		this.countOutcome((AggregationOutcome) aggregatorReport.get(AggregatorReport.OUTCOME));
+	private Pull createPullMessage(Push push) {
+		int[] indices = this.getSessionIndices(push);
+		int numOfReports = countSessions(indices);
+		if (numOfReports == 0) {
+			return null;
+		}
+		Pull pull = new Pull(new String[numOfReports], new int[numOfReports]);
+		this.aggregate(push, indices, pull);
 		return pull;
 	}
 
 	/**
-	 * Creates a PULL-PUSH message by replying to a disseminator with the aggregator report and embeding a new PUSH
-	 * message the disseminator report. In this way the aggregation is performed in two ways.
+	 * Creates a PULL-PUSH message by replying to a disseminator with the aggregator reports and embeding a new PUSH
+	 * message with the disseminator reports. In this way the aggregation is performed in two ways.
 	 *
-	 * @param disseminator
-	 *            the disseeminator that contacted the local aggregator. Note that this is the case when the message is
-	 *            perceived as a PULL. In the case of puss, it refers to the aggregator.
-	 * @param disseminatorReport
-	 *            the report received by the disseminator
-	 *
-	 * @return a pull-push message
-	 */
-	private PullPush createPullPushMessage(Finger disseminator, HashMap<DisseminatorReport, Object> disseminatorReport) {
-		PullPush pullPush = new PullPush(this.aggregationEpoch);
-		pullPush.sender = getPeer().getFinger();
-		HashMap<AggregatorReport, Object> aggregatorReport = aggregator.receiveDisseminatorReport(disseminator,
-				disseminatorReport);
-		pullPush.report = aggregatorReport;
-		this.countOutcome((AggregationOutcome) aggregatorReport.get(AggregatorReport.OUTCOME));
-		Push push = this.createPushMessage(disseminator);
-		pullPush.push = push;
+	 * @param push
+	 *            the push message of the disseminator that contacted the local aggregators
+	 *
+	 * @return a pull-push message or null if no session of the push is aggregated locally
+	 */
+	private PullPush createPullPushMessage(Push push) {
+		int[] indices = this.getSessionIndices(push);
+		int numOfReports = countSessions(indices);
+		if (numOfReports == 0) {
+			return null;
+		}
+		PullPush pullPush = new PullPush(new String[numOfReports], new int[numOfReports]);
+		this.aggregate(push, indices, pullPush);
+		pullPush.push = this.createPushMessage(push.sender);
 		return pullPush;
 	}
 
 	/**
-	 * Returns the aggregate object of a given specific aggregation function.
+	 * The aggregators of the local sessions aggregate the disseminator reports of a push and their aggregator reports
+	 * are put in a pull message.
+	 *
+	 * @param push
+	 *            the received push message
+	 * @param indices
+	 *            the local sessions of the sessions of the push
+	 * @param pull
+	 *            the pull message with a report for every local session
+	 */
+	private void aggregate(Push push, int[] indices, Pull pull) {
+		pull.sender = getPeer().getFinger();
+		int j = 0;
+		for (int k = 0; k < indices.length; k++) {
+			int i = indices[k];
+			if (i >= 0) {
+				AggregatorReport aggregatorReport = this.aggregators[i].receiveDisseminatorReport(
+						push.sender, push.reports[k]);
+				this.publishSnapshot(i);
+				pull.sessions[j] = this.sessions[i];
+				pull.aggregationEpochs[j] = this.aggregationEpochs[i];
+				pull.reports[j] = aggregatorReport;
+				this.countOutcome(aggregatorReport.getOutcome());
+				j++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the aggregate object of a given specific aggregation function from the latest snapshot of the
+	 * aggregates of the default session.
 	 * 
 	 * @param function
 	 *            the aggregation function computed
 	 * @return the aggregate object of a specific type
 	 */
 	public Object getAggregate(AggregationFunction function) {
-		if (active) {
-			AggregationState aggregate = this.aggregator.getAggregationState();
+		return this.getAggregate(DEFAULT_SESSION, function);
+	}
+
+	/**
+	 * Returns the aggregate object of a given specific aggregation function from the latest snapshot of the
+	 * aggregates of a session.
+	 * 
+	 * @param session
+	 *            the name of the session
+	 * @param function
+	 *            the aggregation function computed
+	 * @return the aggregate object of a specific type or null if the session has not been requested
+	 */
+	public Object getAggregate(String session, AggregationFunction function) {
+		AggregateSnapshot aggregate = this.getAggregateSnapshot(session);
+		if (aggregate != null) {
 			return aggregate.getAggregate(function);
 		}
 		return null;
 	}
 
 	/**
-	 * Performs local aggregation between the aggregator and the disseminator in this peer.
+	 * Returns an immutable snapshot of all the aggregates of the default session. A new snapshot is published through
+	 * a volatile reference after every change of the aggregates, so that any thread reads consistent aggregates
+	 * without locks.
+	 * 
+	 * @return the latest snapshot of the aggregates or null if the aggregation has not been requested
+	 */
+	public AggregateSnapshot getAggregateSnapshot() {
+		return this.getAggregateSnapshot(DEFAULT_SESSION);
+	}
+
+	/**
+	 * Returns an immutable snapshot of all the aggregates of a session.
+	 * 
+	 * @param session
+	 *            the name of the session
+	 * @return the latest snapshot of the aggregates or null if the session has not been requested
 	 */
-	private void aggregateLocally() {
-		this.aggregator.addDMAMembership(getPeer().getFinger());
-		this.aggregator.addSMAMembership(this.disseminator.getSelectedState());
-		this.aggregator.addAggregationState(this.disseminator.getSelectedState());
-		this.disseminator.addAMDMembership(getPeer().getFinger());
-		this.disseminator.addAMSMemebership(this.disseminator.getSelectedState(), getPeer().getFinger());
+	public AggregateSnapshot getAggregateSnapshot(String session) {
+		Integer index = this.sessionIndices.get(session);
+		if (index != null) {
+			return this.snapshots[index.intValue()];
+		}
+		return null;
 	}
 
 	/**
-	 * This is how an application requests a new aggregation aggregationEpoch of a set of possible possibleStates a
-	 * selected selectedState. If the DIAS peerlet is inactive, it is activated.
+	 * Publishes a snapshot of the current aggregates of a session if they have changed since the latest snapshot, so
+	 * that reports with a DOUBLE or UNSUCCESSFUL outcome do not copy the aggregates. The array of the snapshots is
+	 * copied on write.
+	 *
+	 * @param i
+	 *            the index of the session
+	 */
+	private void publishSnapshot(int i) {
+		PrimitiveAggregationState aggregate = this.aggregators[i].getAggregationState();
+		AggregateSnapshot snapshot = this.snapshots[i];
+		if (snapshot != null && snapshot.getVersion() == aggregate.getVersion()
+				&& snapshot.getAggregationEpoch() == this.aggregationEpochs[i]) {
+			return;
+		}
+		AggregateSnapshot[] snapshots = this.snapshots.clone();
+		snapshots[i] = aggregate.createSnapshot(this.aggregationEpochs[i]);
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * Returns an estimated quantile of the aggregated arithmetic states of the default session from the latest
+	 * snapshot. It requires the QUANTILE_ACCURACY aggregation parameter.
+	 * 
+	 * @param quantile
+	 *            the rank of the value in [0, 1], e.g. 0.5 for the median
+	 * @return the estimated quantile, NaN without a quantile sketch
+	 */
+	public double getQuantile(double quantile) {
+		return this.getQuantile(DEFAULT_SESSION, quantile);
+	}
+
+	/**
+	 * Returns an estimated quantile of the aggregated arithmetic states of a session from the latest snapshot. It
+	 * requires the QUANTILE_ACCURACY aggregation parameter.
+	 * 
+	 * @param session
+	 *            the name of the session
+	 * @param quantile
+	 *            the rank of the value in [0, 1], e.g. 0.5 for the median
+	 * @return the estimated quantile, NaN without a quantile sketch or if the session has not been requested
+	 */
+	public double getQuantile(String session, double quantile) {
+		AggregateSnapshot aggregate = this.getAggregateSnapshot(session);
+		if (aggregate != null) {
+			return aggregate.getQuantile(quantile);
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Returns the estimated number of distinct values aggregated in this aggregation epoch of the default session
+	 * from the latest snapshot. It requires the DISTINCT_PRECISION aggregation parameter.
+	 * 
+	 * @return the estimated distinct count, NaN without a distinct counter
+	 */
+	public double getDistinctCount() {
+		return this.getDistinctCount(DEFAULT_SESSION);
+	}
+
+	/**
+	 * Returns the estimated number of distinct values aggregated in this aggregation epoch of a session from the
+	 * latest snapshot. It requires the DISTINCT_PRECISION aggregation parameter. The counter cannot forget values,
+	 * therefore the values of replaced states are counted until the next aggregation epoch. With a time window, the
+	 * counter is rebuilt from the contributions once per window, so it counts the values held within the last window.
+	 * 
+	 * @param session
+	 *            the name of the session
+	 * @return the estimated distinct count, NaN without a distinct counter or if the session has not been requested
+	 */
+	public double getDistinctCount(String session) {
+		AggregateSnapshot aggregate = this.getAggregateSnapshot(session);
+		if (aggregate != null) {
+			return aggregate.getDistinctCount();
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Returns the counts of the histogram buckets of the aggregated arithmetic states of the default session from the
+	 * latest snapshot. It requires the HISTOGRAM_EDGES aggregation parameter.
+	 * 
+	 * @return the counts of the buckets, null without a histogram
+	 */
+	public long[] getHistogram() {
+		return this.getHistogram(DEFAULT_SESSION);
+	}
+
+	/**
+	 * Returns the counts of the histogram buckets of the aggregated arithmetic states of a session from the latest
+	 * snapshot. It requires the HISTOGRAM_EDGES aggregation parameter.
+	 * 
+	 * @param session
+	 *            the name of the session
+	 * @return the counts of the buckets, null without a histogram or if the session has not been requested
+	 */
+	public long[] getHistogram(String session) {
+		AggregateSnapshot aggregate = this.getAggregateSnapshot(session);
+		if (aggregate != null) {
+			return aggregate.getHistogram();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the most frequently selected states of the default session from the latest snapshot. It requires the
+	 * TOP_K aggregation parameter.
+	 * 
+	 * @return the identifiers of the states with their estimated counts, ordered by decreasing count, null without a
+	 *         top-k sketch
+	 */
+	public Map<UUID, Long> getTopK() {
+		return this.getTopK(DEFAULT_SESSION);
+	}
+
+	/**
+	 * Returns the most frequently selected states of a session from the latest snapshot. It requires the TOP_K
+	 * aggregation parameter.
+	 * 
+	 * @param session
+	 *            the name of the session
+	 * @return the identifiers of the states with their estimated counts, ordered by decreasing count, null without a
+	 *         top-k sketch or if the session has not been requested
+	 */
+	public Map<UUID, Long> getTopK(String session) {
+		AggregateSnapshot aggregate = this.getAggregateSnapshot(session);
+		if (aggregate != null) {
+			return aggregate.getTopK();
+		}
+		return null;
+	}
+
+	/**
+	 * Performs local aggregation between the aggregator and the disseminator of a session in this peer.
+	 *
+	 * @param i
+	 *            the index of the session
+	 */
+	private void aggregateLocally(int i) {
+		Aggregator aggregator = this.aggregators[i];
+		Disseminator disseminator = this.disseminators[i];
+		aggregator.addDMAMembership(getPeer().getFinger());
+		aggregator.addSMAMembership(disseminator.getSelectedState());
+		aggregator.addAggregationState(disseminator.getSelectedState(), disseminator.getWeight());
+		disseminator.addAMDMembership(getPeer().getFinger());
+		disseminator.addAMSMemebership(disseminator.getSelectedState(), getPeer().getFinger());
+	}
+
+	/**
+	 * Adds a session with its aggregator and disseminator in the arrays of the sessions. The arrays that are read by
+	 * other threads are copied on write.
+	 *
+	 * @param session
+	 *            the name of the session
+	 * @param aggregator
+	 *            the aggregator of the session
+	 * @param disseminator
+	 *            the disseminator of the session
+	 * @return the index of the session
+	 */
+	private int addSession(String session, Aggregator aggregator, Disseminator disseminator) {
+		int n = this.sessions.length;
+		String[] sessions = new String[n + 1];
+		System.arraycopy(this.sessions, 0, sessions, 0, n);
+		sessions[n] = session;
+		int[] aggregationEpochs = new int[n + 1];
+		System.arraycopy(this.aggregationEpochs, 0, aggregationEpochs, 0, n);
+		Aggregator[] aggregators = new Aggregator[n + 1];
+		System.arraycopy(this.aggregators, 0, aggregators, 0, n);
+		aggregators[n] = aggregator;
+		Disseminator[] disseminators = new Disseminator[n + 1];
+		System.arraycopy(this.disseminators, 0, disseminators, 0, n);
+		disseminators[n] = disseminator;
+		EpochPreparation[] preparations = new EpochPreparation[n + 1];
+		System.arraycopy(this.preparations, 0, preparations, 0, n);
+		preparations[n] = new EpochPreparation(n);
+		AggregateSnapshot[] snapshots = new AggregateSnapshot[n + 1];
+		System.arraycopy(this.snapshots, 0, snapshots, 0, n);
+		this.sessions = sessions;
+		this.aggregationEpochs = aggregationEpochs;
+		this.aggregators = aggregators;
+		this.disseminators = disseminators;
+		this.preparations = preparations;
+		this.snapshots = snapshots;
+		Map<String, Integer> sessionIndices = new HashMap<String, Integer>(this.sessionIndices);
+		sessionIndices.put(session, n);
+		this.sessionIndices = sessionIndices;
+		return n;
+	}
+
+	/**
+	 * This is how an application requests a new aggregation aggregationEpoch of the default session.
 	 *
 	 * @param possibleStates
 	 *            the possible states of an application
 	 */
 	public void requestAggregation(AggregationType type, Collection<State> possibleStates, State selectedState) {
-		if (!active) {
-			this.disseminator = new Disseminator(possibleStates, selectedState, this.bloomFilterParams);
-			this.aggregator = new Aggregator(type, this.bloomFilterParams);
-			this.aggregateLocally();
-			this.aggregationEpoch = 0;
-			this.active = true;
-			this.collectSamples();
-			this.runActiveState();
+		this.requestAggregation(DEFAULT_SESSION, type, possibleStates, selectedState);
+	}
+
+	/**
+	 * This is how an application requests a new aggregation aggregationEpoch of a session. The selected state keeps
+	 * the weight of the session, or the WEIGHT aggregation parameter in a new session.
+	 *
+	 * @param session
+	 *            the name of the session
+	 * @param possibleStates
+	 *            the possible states of an application
+	 */
+	public void requestAggregation(String session, AggregationType type, Collection<State> possibleStates,
+			State selectedState) {
+		this.requestAggregation(session, type, possibleStates, selectedState, this.getWeight(session));
+	}
+
+	/**
+	 * This is how an application requests a new aggregation aggregationEpoch of a set of possible possibleStates a
+	 * selected selectedState in a session. A session that is requested for the first time is added with its own
+	 * aggregator and disseminator. If the DIAS peerlet is inactive, it is activated. If a target false positive
+	 * probability is given, the bloom filters of the new aggregation epoch are sized for the AMD and DMA counters of the
+	 * previous one of the session, starting from the sizes of the previous epoch.
+	 *
+	 * @param session
+	 *            the name of the session
+	 * @param possibleStates
+	 *            the possible states of an application
+	 * @param weight
+	 *            the positive weight of the selected state or null if it is not weighted
+	 */
+	public void requestAggregation(String session, AggregationType type, Collection<State> possibleStates,
+			State selectedState, Double weight) {
+		Integer index = this.sessionIndices.get(session);
+		if (index == null) {
+			Disseminator disseminator = new Disseminator(possibleStates, selectedState, this.bloomFilterParams);
+			Aggregator aggregator = new Aggregator(type, this.bloomFilterParams, this.aggregationParams);
+			if (this.window != null) {
+				disseminator.setWindow(this.window.doubleValue());
+			}
+			disseminator.setWeight(weight);
+			int i = this.addSession(session, aggregator, disseminator);
+			this.aggregateLocally(i);
+			this.reclassifySamples();
+			this.publishSnapshot(i);
+			if (!active) {
+				this.active = true;
+				this.collectSamples();
+				this.runActiveState();
+			}
 		} else {
-			this.strategy.clear();
-			this.disseminator.clearMemberships();
-			this.aggregator.clearAggregates();
-			this.disseminator.setPossibleStates(possibleStates);
-			this.disseminator.setSelectedState(selectedState);
-			this.aggregateLocally();
-			this.aggregationEpoch++;
+			int i = index.intValue();
+			int aggregators = this.disseminators[i].getAMDCounter();
+			int disseminators = this.aggregators[i].getDMACounter();
+			this.aggregators[i].clearAggregates();
+			this.disseminators[i].setPossibleStates(possibleStates);
+			this.disseminators[i].setSelectedState(selectedState);
+			this.disseminators[i].setWeight(weight);
+			Double sizingFP = (Double) this.bloomFilterParams.get(BloomFilterParams.SIZING_FP);
+			if (sizingFP != null) {
+				Map<BloomFilterParams, Object> parameters = this.disseminators[i].getParameters();
+				BloomFilterSizing.resize(parameters, aggregators, disseminators, possibleStates.size(),
+						sizingFP.doubleValue());
+				this.disseminators[i].resize(parameters);
+				this.aggregators[i].resize(parameters);
+			}
+			this.aggregateLocally(i);
+			this.reclassifySamples();
+			this.aggregationEpochs[i]++;
+			this.publishSnapshot(i);
+			this.prepareNextEpoch(i);
 		}
 	}
 
 	/**
-	 * Application can change the selected selectedState dynamically and on-the-fly. The bloom filter memberships are
-	 * adjusted to reflect the new local value in the aggregate. The aggregation strategy also rearranges the exploited,
-	 * unexploited and outdated neighbors.
+	 * Expires the contributions in the aggregators that have not been refreshed within the time window, if one is
+	 * given, and the aggregations in the disseminators that have not been refreshed within half the window. The
+	 * aggregators of the expired aggregations become outdated in the aggregation strategy, so that they are pushed
+	 * again before the contributions expire.
+	 */
+	private void advanceTime() {
+		if (this.window != null) {
+			double time = getPeer().getClock().getCurrentTime();
+			for (int i = 0; i < this.sessions.length; i++) {
+				for (Finger aggregator : this.disseminators[i].advanceTime(time)) {
+					this.strategy.updateOutdated(aggregator);
+				}
+				boolean expired = this.aggregators[i].advanceTime(time) > 0;
+				boolean rebuilt = this.aggregators[i].rebuildDistinctCount(this.disseminators[i].getSelectedState());
+				if (expired || rebuilt) {
+					this.publishSnapshot(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The bloom filters retired by the new aggregation epoch of a session are cleared for the next one after a random
+	 * delay within the dissemination period, so that the peers do not zero their filters at the same moment.
+	 *
+	 * @param i
+	 *            the index of the session
+	 */
+	private void prepareNextEpoch(int i) {
+		this.preparations[i].schedule();
+	}
+
+	/**
+	 * Clears the bloom filters retired by the aggregation epochs of a session. A single timer and listener is created
+	 * per session and it is rescheduled at every epoch. A preparation that is still scheduled also clears the filters
+	 * retired by a newer epoch.
+	 */
+	private class EpochPreparation implements TimerListener {
+
+		private final int session;
+		private Timer timer;
+		private boolean scheduled;
+
+		EpochPreparation(int session) {
+			this.session = session;
+			this.scheduled = false;
+		}
+
+		void schedule() {
+			if (this.scheduled) {
+				return;
+			}
+			if (this.timer == null) {
+				this.timer = getPeer().getClock().createNewTimer();
+				this.timer.addTimerListener(this);
+			}
+			this.scheduled = true;
+			this.timer.schedule(Time.inMilliseconds(Math.random() * Tdias));
+		}
+
+		public void timerExpired(Timer timer) {
+			this.scheduled = false;
+			disseminators[this.session].prepareNextEpoch();
+			aggregators[this.session].prepareNextEpoch();
+		}
+	}
+
+	/**
+	 * Application can change the selected selectedState of the default session dynamically and on-the-fly.
 	 *
 	 * @param selectedState
 	 *            the new selected state
 	 */
 	public void changeSelectedState(State selectedState) {
-		if (active) {
-			this.aggregator.removeSMAMembership(this.disseminator.getSelectedState());
-			this.aggregator.removeAggregationState(this.disseminator.getSelectedState());
-			this.aggregator.addSMAMembership(selectedState);
-			this.aggregator.addAggregationState(selectedState);
-			this.disseminator.removeAMSMembership(this.disseminator.getSelectedState(), getPeer().getFinger());
-			this.disseminator.addAMSMemebership(selectedState, getPeer().getFinger());
-			this.disseminator.setSelectedState(selectedState);
+		this.changeSelectedState(DEFAULT_SESSION, selectedState);
+	}
+
+	/**
+	 * Application can change the selected selectedState of a session dynamically and on-the-fly. The selected state
+	 * keeps the weight of the session.
+	 *
+	 * @param session
+	 *            the name of the session
+	 * @param selectedState
+	 *            the new selected state
+	 */
+	public void changeSelectedState(String session, State selectedState) {
+		this.changeSelectedState(session, selectedState, this.getWeight(session));
+	}
+
+	/**
+	 * Application can change the selected selectedState of a session and its weight dynamically and on-the-fly. The
+	 * bloom filter memberships are adjusted to reflect the new local value in the aggregate. The aggregation strategy
+	 * also rearranges the exploited, unexploited and outdated neighbors. If the weight changes, all the exploited
+	 * neighbors become outdated, so that they are pushed again and replace the state with its new weight.
+	 *
+	 * @param session
+	 *            the name of the session
+	 * @param selectedState
+	 *            the new selected state
+	 * @param weight
+	 *            the positive weight of the selected state or null if it is not weighted
+	 */
+	public void changeSelectedState(String session, State selectedState, Double weight) {
+		Integer index = this.sessionIndices.get(session);
+		if (active && index != null) {
+			int i = index.intValue();
+			Aggregator aggregator = this.aggregators[i];
+			Disseminator disseminator = this.disseminators[i];
+			boolean reweighted = weight == null ? disseminator.getWeight() != null : !weight.equals(disseminator
+					.getWeight());
+			aggregator.removeSMAMembership(disseminator.getSelectedState());
+			aggregator.removeAggregationState(disseminator.getSelectedState());
+			aggregator.addSMAMembership(selectedState);
+			aggregator.addAggregationState(selectedState, weight);
+			disseminator.setWeight(weight);
+			this.publishSnapshot(i);
+			disseminator.removeAMSMembership(disseminator.getSelectedState(), getPeer().getFinger());
+			disseminator.addAMSMemebership(selectedState, getPeer().getFinger());
+			disseminator.setSelectedState(selectedState);
 			Collection<Finger> outdated = this.strategy.exportOutdated();
 			for (Finger finger : outdated) {
-				if (this.disseminator.checkAMSMembership(selectedState, finger)) {
+				if (!reweighted && this.checkAMSMemberships(finger)) {
 					this.strategy.importExploited(finger);
 				} else {
 					this.strategy.importOutdated(finger);
@@ -485,6 +1044,21 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 		}
 	}
 
+	/**
+	 * Provides the weight of the selected state of a session.
+	 *
+	 * @param session
+	 *            the name of the session
+	 * @return the weight of the session or the WEIGHT aggregation parameter if the session has not been requested
+	 */
+	private Double getWeight(String session) {
+		Integer index = this.sessionIndices.get(session);
+		if (index != null) {
+			return this.disseminators[index.intValue()].getWeight();
+		}
+		return (Double) this.aggregationParams.get(AggregationParams.WEIGHT);
+	}
+
 	/**
 	 * Indicates if aggregation has been initialized.
 	 * 
@@ -506,7 +1080,10 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 					Logger.getRootLogger().warn("Epoch " + epochNumber);
 				}
 				if (active) {
-					log.log(epochNumber, MeasurementTags.EPOCH, aggregationEpoch);
+					// the epoch and the bloom filters are measured in the first session
+					Aggregator aggregator = aggregators[0];
+					Disseminator disseminator = disseminators[0];
+					log.log(epochNumber, MeasurementTags.EPOCH, aggregationEpochs[0]);
 					// log.log(epochNumber, MeasurementTags.EXPLOITED_SIZE, strategy.getExploitedSize());
 					// log.log(epochNumber, MeasurementTags.UNEXPLOITED_SIZE, strategy.getExploitedSize());
 					// log.log(epochNumber, MeasurementTags.OUTDATED_SIZE, strategy.getOutdatedSize());
@@ -514,6 +1091,8 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 					log.log(epochNumber, MeasurementTags.SMA_COUNTER, aggregator.getSMACounter());
 					log.log(epochNumber, MeasurementTags.DMA_COUNTER, aggregator.getDMACounter());
 					log.log(epochNumber, MeasurementTags.AMS_COUNTER, disseminator.getAMSAverageCounters());
+					log.log(epochNumber, MeasurementTags.SMA_OVERFLOW, aggregator.getSMAOverflows());
+					log.log(epochNumber, MeasurementTags.AMS_OVERFLOW, disseminator.getAMSOverflows());
 					log.log(epochNumber, MeasurementTags.AMD_FP, disseminator.getAMDFalsePositiveProbability());
 					log.log(epochNumber, MeasurementTags.SMA_FP, aggregator.getSMAFalsePositiveProbability());
 					log.log(epochNumber, MeasurementTags.DMA_FP, aggregator.getDMAFalsePositiveProbability());
@@ -564,3 +1143,4 @@ public class DIAS extends BasePeerlet implements DIASInterface, AggregationInter
 	}
 
 }
+
@@ -33,5 +33,7 @@ public enum MeasurementTags {
     SMA_COUNTER,
     DMA_COUNTER,
     AMS_COUNTER,
+    SMA_OVERFLOW,
+    AMS_OVERFLOW,
     EPOCH,
 }
@@ -33,12 +33,13 @@ import protopeer.servers.bootstrap.BootstrapServerUniform;
 import protopeer.servers.bootstrap.SimpleConnector;
 import protopeer.servers.bootstrap.SimplePeerIdentifierGenerator;
 import protopeer.util.quantities.Time;
-import bloomfilter.CHashFactory;
 
 import communication.AggregationStrategy;
 
 import consistency.BloomFilterParams;
+import consistency.BloomFilterSizing;
 import consistency.BloomFilterType;
+import consistency.MembershipDigest;
 import dsutil.protopeer.services.aggregation.AggregationType;
 import enums.PeerSelectionPolicy;
 import enums.ViewPropagationPolicy;
@@ -78,18 +79,11 @@ public class DIASApplExperiment extends SimulatedExperiment
     private final static int exploitedSize=2;
     private final static AggregationStrategy.Strategy strategy=AggregationStrategy.Strategy.EXPLOITATION;
     private final static BloomFilterType amsType=BloomFilterType.COUNTING;
-    private final static int amsHashType=CHashFactory.DOUBLE_HASH;
-    private final static int ams_m=16;
-    private final static int ams_k=24;
-    private final static int dmaHashType=CHashFactory.DOUBLE_HASH;
-    private final static int dma_m=16;
-    private final static int dma_k=24;
-    private final static int amdHashType=CHashFactory.DOUBLE_HASH;
-    private final static int amd_m=16;
-    private final static int amd_k=24;
-    private final static int smaHashType=CHashFactory.DOUBLE_HASH;
-    private final static int sma_m=16;
-    private final static int sma_k=24;
+    private final static int amsHashType=MembershipDigest.DIAS_HASH;
+    private final static int dmaHashType=MembershipDigest.DIAS_HASH;
+    private final static int amdHashType=MembershipDigest.DIAS_HASH;
+    private final static int smaHashType=MembershipDigest.DIAS_HASH;
+    private final static double targetFP=0.001;
     private final static Map<BloomFilterParams, Object> bfParams=new HashMap<BloomFilterParams, Object>();
     
     //DIAS Application Parameterization
@@ -165,17 +159,10 @@ public class DIASApplExperiment extends SimulatedExperiment
     private static Map<BloomFilterParams, Object> collectBloomFilterParams(){
         bfParams.put(BloomFilterParams.AMS_TYPE, amsType);
         bfParams.put(BloomFilterParams.AMS_HASH_TYPE, amsHashType);
-        bfParams.put(BloomFilterParams.AMS_M, ams_m);
-        bfParams.put(BloomFilterParams.AMS_K, ams_k);
         bfParams.put(BloomFilterParams.AMD_HASH_TYPE, amdHashType);
-        bfParams.put(BloomFilterParams.AMD_M, amd_m);
-        bfParams.put(BloomFilterParams.AMD_K, amd_k);
         bfParams.put(BloomFilterParams.DMA_HASH_TYPE, dmaHashType);
-        bfParams.put(BloomFilterParams.DMA_M, dma_m);
-        bfParams.put(BloomFilterParams.DMA_K, dma_k);
         bfParams.put(BloomFilterParams.SMA_HASH_TYPE, smaHashType);
-        bfParams.put(BloomFilterParams.SMA_M, sma_m);
-        bfParams.put(BloomFilterParams.SMA_K, sma_k);
+        BloomFilterSizing.size(bfParams, N, k, targetFP);
         return bfParams;
     }
 
@@ -23,6 +23,8 @@ import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
 
+import aggregation.AggregationParams;
+import aggregation.Histogram;
 import peerlets.DIAS;
 import peerlets.PeerSamplingService;
 import protopeer.Experiment;
@@ -35,10 +37,11 @@ import protopeer.servers.bootstrap.BootstrapClient;
 import protopeer.servers.bootstrap.BootstrapServerUniform;
 import protopeer.servers.bootstrap.SimpleConnector;
 import protopeer.servers.bootstrap.SimplePeerIdentifierGenerator;
-import bloomfilter.CHashFactory;
 import communication.AggregationStrategy;
 import consistency.BloomFilterParams;
+import consistency.BloomFilterSizing;
 import consistency.BloomFilterType;
+import consistency.MembershipDigest;
 import dsutil.protopeer.services.aggregation.AggregationType;
 import enums.PeerSelectionPolicy;
 import enums.ViewPropagationPolicy;
@@ -75,24 +78,21 @@ public class DIASLiveExperiment extends LiveExperiment {
 	private final static int exploitedSize = 10;
 	private final static AggregationStrategy.Strategy strategy = AggregationStrategy.Strategy.EXPLOITATION;
 	private final static BloomFilterType amsType = BloomFilterType.COUNTING;
-	private final static int amsHashType = CHashFactory.DOUBLE_HASH;
-	private final static int ams_m = 16;
-	private final static int ams_k = 24;
-	private final static int dmaHashType = CHashFactory.DOUBLE_HASH;
-	private final static int dma_m = 16;
-	private final static int dma_k = 24;
-	private final static int amdHashType = CHashFactory.DOUBLE_HASH;
-	private final static int amd_m = 16;
-	private final static int amd_k = 24;
-	private final static int smaHashType = CHashFactory.DOUBLE_HASH;
-	private final static int sma_m = 16;
-	private final static int sma_k = 24;
+	private final static int amsHashType = MembershipDigest.DIAS_HASH;
+	private final static int dmaHashType = MembershipDigest.DIAS_HASH;
+	private final static int amdHashType = MembershipDigest.DIAS_HASH;
+	private final static int smaHashType = MembershipDigest.DIAS_HASH;
+	private final static double targetFP = 0.001;
+	private final static int expectedN = 500;
 	private final static Map<BloomFilterParams, Object> bfParams = new HashMap<BloomFilterParams, Object>();
+	private final static boolean compensated = true; //long-lived aggregates without numerical drift
+	private final static int histogramBuckets = 20;
+	private final static double window = 60000; //contributions expire if not refreshed within a minute
 
 	// DIAS Application Parameterization
 	private final static AggregationType type = AggregationType.ARITHMETIC;
 	private final static int Tboot = 15000;
-	private final static int Taggr = 500000;
+	private final static int Taggr = window > 0 ? 0 : 500000; //no epoch restart, the window expires the contributions
 	private final static int k = 5;
 	private final static double minValueDomain = 0;
 	private final static double maxValueDomain = 1;
@@ -145,7 +145,8 @@ public class DIASLiveExperiment extends LiveExperiment {
 				newPeer.addPeerlet(new PeerSamplingService(dyn_c, H, dyn_S, peerSelectionPolicy, viewPropagationPolicy, Tpss,
 						A, B));
 				newPeer.addPeerlet(new DIAS(expID, Tdias, numOfSessions, Tsampling, dyn_samplesize, strategy,
-						dyn_samplesize, dyn_samplesize, dyn_samplesize, collectBloomFilterParams()));
+						dyn_samplesize, dyn_samplesize, dyn_samplesize, collectBloomFilterParams(),
+						collectAggregationParams()));
 				newPeer.addPeerlet(new SimpleDIASApplication(expID, Tboot, Taggr, k, minValueDomain, maxValueDomain, t,
 						Pt, Ps, genScheme, selScheme, type));
 				return newPeer;
@@ -161,18 +162,20 @@ public class DIASLiveExperiment extends LiveExperiment {
 	private static Map<BloomFilterParams, Object> collectBloomFilterParams() {
 		bfParams.put(BloomFilterParams.AMS_TYPE, amsType);
 		bfParams.put(BloomFilterParams.AMS_HASH_TYPE, amsHashType);
-		bfParams.put(BloomFilterParams.AMS_M, ams_m);
-		bfParams.put(BloomFilterParams.AMS_K, ams_k);
 		bfParams.put(BloomFilterParams.AMD_HASH_TYPE, amdHashType);
-		bfParams.put(BloomFilterParams.AMD_M, amd_m);
-		bfParams.put(BloomFilterParams.AMD_K, amd_k);
 		bfParams.put(BloomFilterParams.DMA_HASH_TYPE, dmaHashType);
-		bfParams.put(BloomFilterParams.DMA_M, dma_m);
-		bfParams.put(BloomFilterParams.DMA_K, dma_k);
 		bfParams.put(BloomFilterParams.SMA_HASH_TYPE, smaHashType);
-		bfParams.put(BloomFilterParams.SMA_M, sma_m);
-		bfParams.put(BloomFilterParams.SMA_K, sma_k);
+		BloomFilterSizing.size(bfParams, expectedN, k, targetFP);
 		return bfParams;
 	}
 
+	private static Map<AggregationParams, Object> collectAggregationParams() {
+		Map<AggregationParams, Object> aggregationParams = new HashMap<AggregationParams, Object>();
+		aggregationParams.put(AggregationParams.COMPENSATED, compensated);
+		aggregationParams.put(AggregationParams.HISTOGRAM_EDGES,
+				Histogram.getUniformEdges(minValueDomain, maxValueDomain, histogramBuckets));
+		aggregationParams.put(AggregationParams.WINDOW, window);
+		return aggregationParams;
+	}
+
 }
@@ -90,7 +90,8 @@ public class SimpleDIASApplication extends BasePeerlet implements DIASApplicatio
      *
      * @param id the local experiment identifier
      * @param Tboot a bootstrapping period before requesting an aggregation
-     * @param Taggr the period of aggregation request
+     * @param Taggr the period of aggregation request or 0 for a single
+     * aggregation epoch, e.g. when the contributions expire in a time window
      * @param k the number of possible states
      * @param minValue the minimum value that can be assigned to a possible state
      * @param maxValue the maximum value that can be assigned to a possible state
@@ -169,7 +170,9 @@ public class SimpleDIASApplication extends BasePeerlet implements DIASApplicatio
         bootstrapTimer.addTimerListener(new TimerListener(){
             public void timerExpired(Timer timer){
                 getAggregationInterface().requestAggregation(aggregationType, possibleStates, selectedState);
-                runAggregation();
+                if(Taggr>0){
+                    runAggregation();
+                }
             }
         });
         bootstrapTimer.schedule(Time.inMilliseconds(this.Tboot-this.getRandomInterval(randomInterval)));